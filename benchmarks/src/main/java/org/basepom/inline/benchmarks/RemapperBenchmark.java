@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.benchmarks;
+
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.ClassNameUtils;
+import org.basepom.inline.transformer.ClassPathElement;
+import org.basepom.inline.transformer.ClassPathResource;
+import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.TransformerException;
+import org.basepom.inline.transformer.asm.InlineRemapper;
+import org.basepom.inline.transformer.processor.RemapperProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.Closer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the lookups that the remapper does for every type, descriptor and string constant of a rewritten class. The rules relocate 50 packages with 20
+ * classes and 2 resources each, the root jar contains 10 classes that are not relocated.
+ * <p>
+ * The {@code map} benchmarks look up the new name of a type. These names are computed once at the end of the pre-scan phase and not cached by the
+ * remapper. The {@code cached} value benchmarks call a remapper that has already seen the string constant, the {@code uncached} value benchmarks use a
+ * fresh remapper for every call and measure the lookup in the relocation rules. Run with {@code -prof gc} (or through {@link #main(String[])}) to see the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RemapperBenchmark {
+
+    private static final String PREFIX = "relocated";
+
+    static final String RELOCATED_TYPE = "com/example/p17/Class11";
+    static final String RELOCATED_CLASS_NAME = "com.example.p17.Class11";
+    static final String RELOCATED_SETTING = "com.example.p17.Class11.SETTING";
+    static final String RELOCATED_RESOURCE = "com/example/p17/resource1.properties";
+    static final String RELOCATED_ARRAY = "[Lcom.example.p17.Class11;";
+    static final String ROOT_TYPE = "org/example/root/Main3";
+    static final String JDK_TYPE = "java/lang/String";
+    static final String JDK_CLASS_NAME = "java.util.concurrent.ConcurrentHashMap";
+    static final String TEXT = "Hello, World. This is not a class name.";
+
+    private final Closer closer = Closer.create();
+
+    private RemapperProcessor remapperProcessor;
+    private InlineRemapper remapper;
+    private List<String> relocatedElements;
+    private List<String> missingElements;
+
+    @Setup(Level.Trial)
+    public void setUp() throws TransformerException, IOException {
+        remapperProcessor = createRemapperProcessor(closer);
+
+        remapper = new InlineRemapper(remapperProcessor);
+        // fill the value cache
+        for (String key : new String[] {RELOCATED_CLASS_NAME, RELOCATED_SETTING, RELOCATED_RESOURCE, RELOCATED_ARRAY, JDK_CLASS_NAME, TEXT}) {
+            remapper.mapValue(key);
+        }
+
+        relocatedElements = ClassNameUtils.pathToElements(RELOCATED_TYPE);
+        missingElements = ClassNameUtils.pathToElements(JDK_TYPE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        closer.close();
+    }
+
+    /**
+     * Creates a remapper processor with a fixed set of relocation rules.
+     */
+    static RemapperProcessor createRemapperProcessor(Closer closer) throws TransformerException, IOException {
+        RemapperProcessor processor = new RemapperProcessor();
+        JarProcessor.Chain<ClassPathResource> chain = resource -> resource;
+
+        // the jar files are never opened.
+        ClassPathElement rootElement = ClassPathElement.forFile(new File("root.jar"), closer, null, "org.example", "root", false, 0L,
+                ClassPathTag.ROOT_JAR);
+        for (int c = 0; c < 10; c++) {
+            processor.preScan(ClassPathResource.forTesting(format("org/example/root/Main%d.class", c), rootElement, ClassPathTag.CLASS, ClassPathTag.FILE),
+                    chain);
+        }
+
+        ClassPathElement relocatedElement = ClassPathElement.forFile(new File("relocated.jar"), closer, PREFIX, "com.example", "relocated", true, 0L);
+        for (int p = 0; p < 50; p++) {
+            for (int c = 0; c < 20; c++) {
+                processor.preScan(ClassPathResource.forTesting(format("com/example/p%d/Class%d.class", p, c), relocatedElement,
+                        ClassPathTag.CLASS, ClassPathTag.FILE), chain);
+            }
+            for (int r = 0; r < 2; r++) {
+                processor.preScan(ClassPathResource.forTesting(format("com/example/p%d/resource%d.properties", p, r), relocatedElement,
+                        ClassPathTag.RESOURCE, ClassPathTag.FILE), chain);
+            }
+        }
+        return processor;
+    }
+
+    @Benchmark
+    public String mapRelocated() {
+        return remapper.map(RELOCATED_TYPE);
+    }
+
+    @Benchmark
+    public String mapRoot() {
+        return remapper.map(ROOT_TYPE);
+    }
+
+    @Benchmark
+    public String mapJdk() {
+        return remapper.map(JDK_TYPE);
+    }
+
+    @Benchmark
+    public Object mapValueClassNameCached() {
+        return remapper.mapValue(RELOCATED_CLASS_NAME);
+    }
+
+    @Benchmark
+    public Object mapValueTextCached() {
+        return remapper.mapValue(TEXT);
+    }
+
+    @Benchmark
+    public Object mapValueClassNameUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(RELOCATED_CLASS_NAME);
+    }
+
+    @Benchmark
+    public Object mapValueSettingUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(RELOCATED_SETTING);
+    }
+
+    @Benchmark
+    public Object mapValueResourceUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(RELOCATED_RESOURCE);
+    }
+
+    @Benchmark
+    public Object mapValueArrayUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(RELOCATED_ARRAY);
+    }
+
+    @Benchmark
+    public Object mapValueJdkClassNameUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(JDK_CLASS_NAME);
+    }
+
+    @Benchmark
+    public Object mapValueTextUncached() {
+        return new InlineRemapper(remapperProcessor).mapValue(TEXT);
+    }
+
+    @Benchmark
+    public ImmutableSortedSet<?> renamersForElementHit() {
+        return remapperProcessor.renamersForElement(relocatedElements, ClassPathTag.CLASS);
+    }
+
+    @Benchmark
+    public ImmutableSortedSet<?> renamersForElementMiss() {
+        return remapperProcessor.renamersForElement(missingElements, ClassPathTag.CLASS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RemapperBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
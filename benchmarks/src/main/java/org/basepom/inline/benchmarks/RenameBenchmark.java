@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.benchmarks;
+
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.ClassNameUtils;
+import org.basepom.inline.transformer.Rename;
+import org.basepom.inline.transformer.util.SetMultiTrie;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the building blocks of the relocation rules: applying a {@link Rename} and looking up names in a {@link SetMultiTrie}. Run with
+ * {@code -prof gc} (or through {@link #main(String[])}) to see the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenameBenchmark {
+
+    private Rename classNameRename;
+    private Rename resourcePathRename;
+    private SetMultiTrie<String, String> trie;
+    private List<String> hitElements;
+    private List<String> prefixElements;
+    private List<String> missElements;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        classNameRename = Rename.forClassName("com.example.p17", "relocated.com.example.p17", true);
+        resourcePathRename = Rename.forResourcePath("com/example/p17", "relocated/com/example/p17");
+
+        trie = new SetMultiTrie<>();
+        for (int p = 0; p < 50; p++) {
+            for (int c = 0; c < 20; c++) {
+                String path = format("com/example/p%d/Class%d", p, c);
+                trie.add(ClassNameUtils.pathToElements(path), path);
+            }
+        }
+
+        hitElements = ClassNameUtils.pathToElements("com/example/p17/Class11");
+        prefixElements = ClassNameUtils.pathToElements("com/example/p17");
+        missElements = ClassNameUtils.pathToElements("com/example/p99/Class11");
+    }
+
+    @Benchmark
+    public String renameClassNameHit() {
+        return classNameRename.renameClassName(RemapperBenchmark.RELOCATED_CLASS_NAME);
+    }
+
+    @Benchmark
+    public String renameClassNamePathHit() {
+        return classNameRename.renameClassName(RemapperBenchmark.RELOCATED_TYPE);
+    }
+
+    @Benchmark
+    public String renameClassNameMiss() {
+        return classNameRename.renameClassName(RemapperBenchmark.JDK_CLASS_NAME);
+    }
+
+    @Benchmark
+    public String renamePathHit() {
+        return resourcePathRename.renamePath(RemapperBenchmark.RELOCATED_RESOURCE);
+    }
+
+    @Benchmark
+    public String renamePathMiss() {
+        return resourcePathRename.renamePath(RemapperBenchmark.JDK_TYPE);
+    }
+
+    @Benchmark
+    public ImmutableSet<String> trieHit() {
+        return trie.getValues(hitElements);
+    }
+
+    @Benchmark
+    public ImmutableSet<String> triePrefix() {
+        return trie.getValues(prefixElements);
+    }
+
+    @Benchmark
+    public ImmutableSet<String> trieMiss() {
+        return trie.getValues(missElements);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RenameBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.benchmarks;
+
+import static java.lang.String.format;
+
+import org.basepom.inline.mojo.JarContents;
+import org.basepom.inline.transformer.ClassPath;
+import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.JarTransformer;
+import org.basepom.inline.transformer.TransformerOptions;
+import org.basepom.inline.transformer.util.WorkerPool;
+import org.basepom.inline.transformer.zip.CompressionPolicy;
+import org.basepom.inline.transformer.zip.ZipArchiveWriter;
+import org.basepom.inline.transformer.zip.ZipEntrySpool;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closer;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+/**
+ * Runs the transformer over synthetic class paths of increasing size and records time, peak heap and output size for each run. Use it to check that the
+ * cost of inlining grows linearly with the number of entries.
+ * <p>
+ * Usage: {@code ScalingHarness [sizes] [result file] [threads]}, e.g. {@code ScalingHarness 1000,10000,100000,500000 scaling.csv 1}. Run each size in a
+ * separate JVM for the most accurate peak heap numbers.
+ * <p>
+ * The output of the transformer is assembled and written by the {@link JarContents} of the plugin, with the same spool and archive writer. Peak heap is
+ * the sum of the peak usage of all heap memory pools, so it slightly overestimates the actual peak.
+ */
+public final class ScalingHarness {
+
+    private static final List<Integer> DEFAULT_SIZES = ImmutableList.of(1_000, 10_000, 100_000, 500_000);
+
+    private static final long TIMESTAMP = 1_600_000_000_000L;
+    private static final String PREFIX = "org.basepom.inline.benchmarks.relocated";
+
+    // shape of the generated class path. Each package contributes one directory, the classes, the resources and the multi-release classes.
+    private static final int CLASSES_PER_PACKAGE = 100;
+    private static final int RESOURCES_PER_PACKAGE = 10;
+    private static final int MULTI_RELEASE_CLASSES_PER_PACKAGE = 5;
+    private static final int ENTRIES_PER_PACKAGE = 1 + CLASSES_PER_PACKAGE + RESOURCES_PER_PACKAGE + MULTI_RELEASE_CLASSES_PER_PACKAGE;
+    private static final int MAX_PACKAGES_PER_JAR = 500;
+    private static final int MAX_SERVICE_FILES_PER_JAR = 10;
+
+    private final Path workDirectory;
+    private final int threads;
+
+    private ScalingHarness(Path workDirectory, int threads) {
+        this.workDirectory = workDirectory;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = args.length > 0
+                ? Splitter.on(',').trimResults().omitEmptyStrings().splitToStream(args[0]).map(Integer::valueOf).collect(ImmutableList.toImmutableList())
+                : DEFAULT_SIZES;
+        Path resultFile = Paths.get(args.length > 1 ? args[1] : "scaling-results.csv");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        Path workDirectory = Files.createTempDirectory("inline-scaling-");
+        try {
+            ScalingHarness harness = new ScalingHarness(workDirectory, threads);
+
+            boolean header = !Files.exists(resultFile);
+            try (BufferedWriter writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (header) {
+                    writer.write(Result.CSV_HEADER);
+                    writer.newLine();
+                }
+                System.out.println(Result.TABLE_HEADER);
+                for (int size : sizes) {
+                    Result result = harness.run(size);
+                    System.out.println(result.toTableRow());
+                    writer.write(result.toCsvRow());
+                    writer.newLine();
+                    writer.flush();
+                }
+            }
+        } finally {
+            MoreFiles.deleteRecursively(workDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+    }
+
+    private Result run(int size) throws Exception {
+        Path runDirectory = Files.createDirectory(workDirectory.resolve("run-" + size));
+        try {
+            File rootJar = runDirectory.resolve("root.jar").toFile();
+            int inputEntries = new SyntheticJar("com.example.root", 1, 10, 1).write(rootJar.toPath());
+
+            int packages = Math.max(1, (size - inputEntries) / ENTRIES_PER_PACKAGE);
+            ImmutableList.Builder<File> builder = ImmutableList.builder();
+            for (int jar = 0; packages > 0; jar++) {
+                int jarPackages = Math.min(packages, MAX_PACKAGES_PER_JAR);
+                Path file = runDirectory.resolve(format("jar-%d.jar", jar));
+                inputEntries += new SyntheticJar(format("com.example.jar%d", jar), jarPackages, CLASSES_PER_PACKAGE, RESOURCES_PER_PACKAGE,
+                        Math.min(jarPackages, MAX_SERVICE_FILES_PER_JAR), MULTI_RELEASE_CLASSES_PER_PACKAGE).write(file);
+                builder.add(file.toFile());
+                packages -= jarPackages;
+            }
+            ImmutableList<File> inlinedJars = builder.build();
+
+            List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool);
+                }
+            }
+
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            File outputJar = runDirectory.resolve("output.jar").toFile();
+            long startTime = System.nanoTime();
+            int outputEntries = transform(rootJar, inlinedJars, outputJar);
+            long elapsedNanos = System.nanoTime() - startTime;
+
+            long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+            return new Result(size, inlinedJars.size() + 1, inputEntries, outputEntries, elapsedNanos, peakHeap, outputJar.length());
+        } finally {
+            MoreFiles.deleteRecursively(runDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+    }
+
+    private int transform(File rootJar, List<File> inlinedJars, File outputJar) throws Exception {
+        int outputEntries = 0;
+
+        // same as the plugin, rewriting classes and compressing entries share the worker threads.
+        ExecutorService workerPool = threads > 1 ? WorkerPool.create(threads) : null;
+        try (Closer closer = Closer.create();
+                ZipEntrySpool spool = new ZipEntrySpool(outputJar.getParentFile().toPath(), CompressionPolicy.DEFAULT, workerPool)) {
+            ClassPath classPath = new ClassPath(workDirectory.toFile(), TIMESTAMP, closer);
+            classPath.addFile(rootJar, "com.example", "root", ClassPathTag.ROOT_JAR);
+            for (int i = 0; i < inlinedJars.size(); i++) {
+                classPath.addFile(inlinedJars.get(i), PREFIX, "com.example", "jar-" + i, true);
+            }
+
+            JarContents jarContents = new JarContents(spool);
+            AtomicInteger resourceCount = new AtomicInteger();
+            JarTransformer transformer = new JarTransformer(classPathResource -> {
+                resourceCount.incrementAndGet();
+                jarContents.accept(classPathResource);
+            }, TIMESTAMP, true, ImmutableSet.of(), TransformerOptions.DEFAULT.withThreads(threads).withExecutor(workerPool));
+            transformer.transform(classPath);
+
+            try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(outputJar.toPath()))) {
+                jarContents.write(writer);
+            }
+            outputEntries = resourceCount.get();
+        } finally {
+            if (workerPool != null) {
+                workerPool.shutdownNow();
+            }
+        }
+        return outputEntries;
+    }
+
+    private static final class Result {
+
+        static final String CSV_HEADER = "size,jars,input_entries,output_entries,time_ms,peak_heap_mb,output_mb,us_per_entry,heap_kb_per_entry";
+        static final String TABLE_HEADER = format("%10s %6s %14s %14s %10s %14s %10s %14s %18s",
+                "size", "jars", "input entries", "output entries", "time ms", "peak heap MB", "output MB", "us per entry", "heap KB per entry");
+
+        private final int size;
+        private final int jars;
+        private final int inputEntries;
+        private final int outputEntries;
+        private final double timeMillis;
+        private final double peakHeapMegabytes;
+        private final double outputMegabytes;
+
+        Result(int size, int jars, int inputEntries, int outputEntries, long elapsedNanos, long peakHeapBytes, long outputBytes) {
+            this.size = size;
+            this.jars = jars;
+            this.inputEntries = inputEntries;
+            this.outputEntries = outputEntries;
+            this.timeMillis = elapsedNanos / 1_000_000.0;
+            this.peakHeapMegabytes = peakHeapBytes / (1024.0 * 1024.0);
+            this.outputMegabytes = outputBytes / (1024.0 * 1024.0);
+        }
+
+        private double microsPerEntry() {
+            return timeMillis * 1000.0 / inputEntries;
+        }
+
+        private double heapKilobytesPerEntry() {
+            return peakHeapMegabytes * 1024.0 / inputEntries;
+        }
+
+        String toCsvRow() {
+            return format("%d,%d,%d,%d,%.1f,%.1f,%.2f,%.2f,%.3f",
+                    size, jars, inputEntries, outputEntries, timeMillis, peakHeapMegabytes, outputMegabytes, microsPerEntry(), heapKilobytesPerEntry());
+        }
+
+        String toTableRow() {
+            return format("%10d %6d %14d %14d %10.1f %14.1f %10.2f %14.2f %18.3f",
+                    size, jars, inputEntries, outputEntries, timeMillis, peakHeapMegabytes, outputMegabytes, microsPerEntry(), heapKilobytesPerEntry());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.benchmarks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates jars with synthetic classes and resources. The classes reference each other through field types, method descriptors, method calls and string
+ * constants, so every kind of reference is rewritten when the jar is inlined. Optionally, the jar contains service files and multi-release versions of
+ * the classes.
+ */
+public final class SyntheticJar {
+
+    private static final long TIMESTAMP = 1_600_000_000_000L;
+
+    private final String basePackage;
+    private final int packages;
+    private final int classesPerPackage;
+    private final int resourcesPerPackage;
+    private final int serviceFiles;
+    private final int multiReleaseClassesPerPackage;
+
+    /**
+     * Creates a new synthetic jar definition without service files and multi-release classes.
+     *
+     * @param basePackage         Package name for all generated classes, e.g. {@code com.example}.
+     * @param packages            Number of packages below the base package.
+     * @param classesPerPackage   Number of classes in each package.
+     * @param resourcesPerPackage Number of resource files in each package.
+     */
+    public SyntheticJar(String basePackage, int packages, int classesPerPackage, int resourcesPerPackage) {
+        this(basePackage, packages, classesPerPackage, resourcesPerPackage, 0, 0);
+    }
+
+    /**
+     * Creates a new synthetic jar definition.
+     *
+     * @param basePackage                   Package name for all generated classes, e.g. {@code com.example}.
+     * @param packages                      Number of packages below the base package.
+     * @param classesPerPackage             Number of classes in each package.
+     * @param resourcesPerPackage           Number of resource files in each package.
+     * @param serviceFiles                  Number of service files in META-INF/services. Each service file lists up to three classes.
+     * @param multiReleaseClassesPerPackage Number of classes in each package that also have a Java 11 version in META-INF/versions/11.
+     */
+    public SyntheticJar(String basePackage, int packages, int classesPerPackage, int resourcesPerPackage, int serviceFiles,
+            int multiReleaseClassesPerPackage) {
+        this.basePackage = checkNotNull(basePackage, "basePackage is null");
+        checkArgument(packages > 0, "packages must be positive");
+        checkArgument(classesPerPackage > 0, "classesPerPackage must be positive");
+        checkArgument(resourcesPerPackage >= 0, "resourcesPerPackage must not be negative");
+        checkArgument(serviceFiles >= 0 && serviceFiles <= packages, "serviceFiles must be between 0 and the number of packages");
+        checkArgument(multiReleaseClassesPerPackage >= 0 && multiReleaseClassesPerPackage <= classesPerPackage,
+                "multiReleaseClassesPerPackage must be between 0 and the number of classes per package");
+
+        this.packages = packages;
+        this.classesPerPackage = classesPerPackage;
+        this.resourcesPerPackage = resourcesPerPackage;
+        this.serviceFiles = serviceFiles;
+        this.multiReleaseClassesPerPackage = multiReleaseClassesPerPackage;
+    }
+
+    /**
+     * Writes the jar.
+     *
+     * @return The number of entries (including directories and the manifest) in the jar.
+     */
+    public int write(Path file) throws IOException {
+        checkNotNull(file, "file is null");
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Created-By", SyntheticJar.class.getName());
+        if (multiReleaseClassesPerPackage > 0) {
+            manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+        }
+
+        int entries = 0;
+        try (OutputStream out = Files.newOutputStream(file);
+                JarOutputStream jar = new JarOutputStream(out)) {
+            entries += addEntry(jar, "META-INF/", new byte[0]);
+            jar.putNextEntry(newEntry("META-INF/MANIFEST.MF"));
+            manifest.write(jar);
+            jar.closeEntry();
+            entries++;
+
+            if (serviceFiles > 0) {
+                entries += addEntry(jar, "META-INF/services/", new byte[0]);
+                for (int s = 0; s < serviceFiles; s++) {
+                    StringBuilder content = new StringBuilder();
+                    for (int c = 1; c < Math.min(4, classesPerPackage); c++) {
+                        content.append(className(s, c).replace('/', '.')).append('\n');
+                    }
+                    entries += addEntry(jar, "META-INF/services/" + className(s, 0).replace('/', '.'), content.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            if (multiReleaseClassesPerPackage > 0) {
+                entries += addEntry(jar, "META-INF/versions/", new byte[0]);
+                entries += addEntry(jar, "META-INF/versions/11/", new byte[0]);
+                for (int p = 0; p < packages; p++) {
+                    for (int c = 0; c < multiReleaseClassesPerPackage; c++) {
+                        entries += addEntry(jar, "META-INF/versions/11/" + className(p, c) + ".class", generateClass(p, c));
+                    }
+                }
+            }
+
+            String basePath = basePackage.replace('.', '/');
+            StringBuilder directory = new StringBuilder();
+            for (String element : basePath.split("/")) {
+                directory.append(element).append('/');
+                entries += addEntry(jar, directory.toString(), new byte[0]);
+            }
+
+            for (int p = 0; p < packages; p++) {
+                entries += addEntry(jar, format("%s/p%d/", basePath, p), new byte[0]);
+                for (int c = 0; c < classesPerPackage; c++) {
+                    entries += addEntry(jar, className(p, c) + ".class", generateClass(p, c));
+                }
+                for (int r = 0; r < resourcesPerPackage; r++) {
+                    String content = format("class=%s%nresource=%s/p%d/resource%d.properties%n", className(p, r % classesPerPackage).replace('/', '.'),
+                            basePath, p, r);
+                    entries += addEntry(jar, format("%s/p%d/resource%d.properties", basePath, p, r), content.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private String className(int packageIndex, int classIndex) {
+        return format("%s/p%d/Class%d", basePackage.replace('.', '/'), packageIndex, classIndex);
+    }
+
+    private byte[] generateClass(int packageIndex, int classIndex) {
+        String name = className(packageIndex, classIndex);
+        String next = className(packageIndex, (classIndex + 1) % classesPerPackage);
+        String other = className((packageIndex + 1) % packages, classIndex);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+
+        cw.visitField(Opcodes.ACC_PRIVATE, "next", "L" + next + ";", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "other", "L" + other + ";", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "others", "Ljava/util/List;", "Ljava/util/List<L" + other + ";>;", null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // string constants with class and resource names.
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "className", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(other.replace('/', '.'));
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "resourceName", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(format("/%s/p%d/resource0.properties", basePackage.replace('.', '/'), packageIndex));
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // method descriptors and calls.
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "link", "(L" + next + ";L" + other + ";)L" + name + ";", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, name, "next", "L" + next + ";");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, name, "other", "L" + other + ";");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "create", "()L" + other + ";", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(Opcodes.NEW, other);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, other, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static int addEntry(JarOutputStream jar, String name, byte[] content) throws IOException {
+        jar.putNextEntry(newEntry(name));
+        jar.write(content);
+        jar.closeEntry();
+        return 1;
+    }
+
+    private static JarEntry newEntry(String name) {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(TIMESTAMP);
+        return entry;
+    }
+}
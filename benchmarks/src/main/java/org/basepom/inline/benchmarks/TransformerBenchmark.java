@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.benchmarks;
+
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.ClassPath;
+import org.basepom.inline.transformer.ClassPathResource;
+import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.JarTransformer;
+import org.basepom.inline.transformer.TransformerOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closer;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import de.softwareforge.testing.maven.MavenArtifactLoader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the complete transformer over different class paths. Reports throughput as transformations per second and, through the auxiliary counters, as
+ * entries per second and megabytes per second of output. Run with {@code -prof gc} (or through {@link #main(String[])}) to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TransformerBenchmark {
+
+    private static final long TIMESTAMP = 1_600_000_000_000L;
+    private static final String GROUP_ID = "org.basepom.inline.benchmarks";
+    private static final String PREFIX = "org.basepom.inline.benchmarks.relocated";
+
+    private static final String GUAVA_VERSION = "33.4.8-jre";
+
+    /**
+     * The class path to inline.
+     * <ul>
+     *     <li>small - a synthetic jar with 500 classes</li>
+     *     <li>guava - the Guava jar (about 2,000 classes)</li>
+     *     <li>many-jars - 200 synthetic jars with 25 classes each</li>
+     * </ul>
+     */
+    @Param({"small", "guava", "many-jars"})
+    public String classPath;
+
+    @Param("1")
+    public int threads;
+
+    private Path workDirectory;
+    private File rootJar;
+    private ImmutableList<File> inlinedJars;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("inline-benchmark-");
+
+        rootJar = workDirectory.resolve("root.jar").toFile();
+        new SyntheticJar("com.example.root", 1, 10, 1).write(rootJar.toPath());
+
+        ImmutableList.Builder<File> builder = ImmutableList.builder();
+        switch (classPath) {
+            case "small":
+                builder.add(writeJar(new SyntheticJar("com.example.small", 10, 50, 5), "small.jar"));
+                break;
+            case "guava":
+                builder.add(new MavenArtifactLoader("jar").getArtifactFile("com.google.guava", "guava", GUAVA_VERSION));
+                break;
+            case "many-jars":
+                for (int i = 0; i < 200; i++) {
+                    builder.add(writeJar(new SyntheticJar(format("com.example.jar%d", i), 1, 25, 2), format("jar-%d.jar", i)));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown class path: " + classPath);
+        }
+        inlinedJars = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MoreFiles.deleteRecursively(workDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    private File writeJar(SyntheticJar syntheticJar, String name) throws IOException {
+        Path file = workDirectory.resolve(name);
+        syntheticJar.write(file);
+        return file.toFile();
+    }
+
+    @Benchmark
+    public void transform(OutputCounters counters) throws Exception {
+        try (Closer closer = Closer.create()) {
+            ClassPath transformerClassPath = new ClassPath(workDirectory.toFile(), TIMESTAMP, closer);
+            transformerClassPath.addFile(rootJar, GROUP_ID, "root", ClassPathTag.ROOT_JAR);
+            for (int i = 0; i < inlinedJars.size(); i++) {
+                transformerClassPath.addFile(inlinedJars.get(i), PREFIX, GROUP_ID, "inlined-" + i, true);
+            }
+
+            JarTransformer transformer = new JarTransformer(counters::add, TIMESTAMP, false, ImmutableSet.of(),
+                    TransformerOptions.DEFAULT.withThreads(threads));
+            transformer.transform(transformerClassPath);
+        }
+    }
+
+    /**
+     * Counts the resources that the transformer writes. Reported per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class OutputCounters {
+
+        public long entries;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entries = 0;
+            megabytes = 0;
+        }
+
+        void add(ClassPathResource classPathResource) {
+            entries++;
+            // retrieving the content waits for the class to be rewritten.
+            megabytes += classPathResource.getContent().length / (1024.0 * 1024.0);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransformerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
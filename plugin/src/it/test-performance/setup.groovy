@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.jar.Attributes
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+
+// Generates a large synthetic dependency set and installs it into the integration test repository.
+// synthetic-00 depends on all other jars, so the inline goal also has to resolve a wide transitive dependency tree.
+
+int jars = Integer.getInteger("performance.jars", 20)
+int packages = Integer.getInteger("performance.packages", 20)
+int classes = Integer.getInteger("performance.classes", 50)
+int resources = Integer.getInteger("performance.resources", 5)
+
+def groupDirectory = new File(localRepositoryPath, "org/basepom/inline/it")
+
+def artifactId = { int jar -> String.format("synthetic-%02d", jar) }
+
+def createClass = { String className, String nextClassName, String dependencyClassName, String resourceName ->
+    def classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+    classWriter.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null)
+    classWriter.visitField(Opcodes.ACC_PRIVATE, "next", "L${nextClassName};", null, null).visitEnd()
+    classWriter.visitField(Opcodes.ACC_PRIVATE, "dependency", "L${dependencyClassName};", null, null).visitEnd()
+
+    def constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null)
+    constructor.visitCode()
+    constructor.visitVarInsn(Opcodes.ALOAD, 0)
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false)
+    constructor.visitInsn(Opcodes.RETURN)
+    constructor.visitMaxs(0, 0)
+    constructor.visitEnd()
+
+    def resource = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "resourceName", "()Ljava/lang/String;", null, null)
+    resource.visitCode()
+    resource.visitLdcInsn(resourceName)
+    resource.visitInsn(Opcodes.ARETURN)
+    resource.visitMaxs(0, 0)
+    resource.visitEnd()
+
+    classWriter.visitEnd()
+    return classWriter.toByteArray()
+}
+
+for (int jar = 0; jar < jars; jar++) {
+    def versionDirectory = new File(groupDirectory, "${artifactId(jar)}/1.0")
+    versionDirectory.mkdirs()
+
+    def manifest = new Manifest()
+    manifest.mainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0")
+
+    new JarOutputStream(new FileOutputStream(new File(versionDirectory, "${artifactId(jar)}-1.0.jar")), manifest).withCloseable { out ->
+        def addEntry = { String name, byte[] content ->
+            out.putNextEntry(new JarEntry(name))
+            out.write(content)
+            out.closeEntry()
+        }
+
+        addEntry("synthetic/", new byte[0])
+        addEntry("synthetic/j${jar}/", new byte[0])
+
+        for (int p = 0; p < packages; p++) {
+            String packageName = "synthetic/j${jar}/p${p}"
+            String dependencyClassName = "synthetic/j${(jar + 1) % jars}/p${p}/Class0"
+            addEntry("${packageName}/", new byte[0])
+
+            for (int c = 0; c < classes; c++) {
+                addEntry("${packageName}/Class${c}.class",
+                        createClass("${packageName}/Class${c}", "${packageName}/Class${(c + 1) % classes}", dependencyClassName,
+                                "${packageName}/resource${c % resources}.properties"))
+            }
+            for (int r = 0; r < resources; r++) {
+                addEntry("${packageName}/resource${r}.properties", "class=synthetic.j${jar}.p${p}.Class${r}\n".getBytes("UTF-8"))
+            }
+        }
+
+        addEntry("META-INF/services/", new byte[0])
+        addEntry("META-INF/services/synthetic.j${jar}.p0.Class0", "synthetic.j${jar}.p0.Class1\n".getBytes("UTF-8"))
+    }
+
+    def dependencies = jar > 0 ? "" : (1..<jars).collect { """
+        <dependency>
+            <groupId>org.basepom.inline.it</groupId>
+            <artifactId>${artifactId(it)}</artifactId>
+            <version>1.0</version>
+        </dependency>""" }.join("")
+
+    new File(versionDirectory, "${artifactId(jar)}-1.0.pom").text = """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>org.basepom.inline.it</groupId>
+    <artifactId>${artifactId(jar)}</artifactId>
+    <version>1.0</version>
+    <dependencies>${dependencies}
+    </dependencies>
+</project>
+"""
+}
+
+return true
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.jar.JarFile
+
+// Compares the execution report of the inline goal against the budgets in budget.properties.
+// Every budget can be overridden with a system property of the same name.
+
+def load = { File file ->
+    def properties = new Properties()
+    file.withInputStream { properties.load(it) }
+    return properties
+}
+
+def reportFile = new File(basedir, "target/inline-report.properties")
+assert reportFile.isFile(): "No execution report found at ${reportFile}"
+
+def report = load(reportFile)
+def budgets = load(new File(basedir, "budget.properties"))
+
+// the inlined jar replaces the main artifact
+int jars = Integer.getInteger("performance.jars", 20)
+def jarFile = new File(basedir, "target/test-performance-1.0.under-test.jar")
+new JarFile(jarFile).withCloseable { jar ->
+    assert jar.getEntry("testjar/TestCode.class") != null
+    assert jar.getEntry("relocated/synthetic/j0/p0/Class0.class") != null
+    assert jar.getEntry("relocated/synthetic/j${jars - 1}/p0/Class0.class".toString()) != null
+    assert jar.getEntry("synthetic/j0/p0/Class0.class") == null
+}
+
+def results = new StringBuilder("Performance results:\n")
+def failures = []
+
+["elapsed.millis", "heap.peak.bytes", "output.bytes"].each { key ->
+    long value = Long.parseLong(report.getProperty(key))
+    long budget = Long.parseLong(System.getProperty("budget." + key, budgets.getProperty("budget." + key)))
+
+    results.append(String.format("    %-16s %,15d (budget %,15d)%n", key, value, budget))
+    if (value > budget) {
+        failures << String.format("%s is %,d, exceeds budget of %,d", key, value, budget)
+    }
+}
+results.append(String.format("    %-16s %,15d%n", "output.entries", Long.parseLong(report.getProperty("output.entries"))))
+
+println results
+new File(basedir, "target/performance-results.txt").text = results.toString()
+
+assert failures.isEmpty(): "Performance budget exceeded: ${failures.join(', ')}"
+
+return true
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.mojo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Records execution time, peak heap usage and output size of an execution. Used by the performance integration tests to detect regressions.
+ * <p>
+ * Peak heap usage is the sum of the peak usage of all heap memory pools since the execution started. It is measured for the whole JVM, so it includes
+ * everything else that runs concurrently in the build.
+ */
+final class ExecutionReport {
+
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+    private final List<MemoryPoolMXBean> heapPools;
+
+    private ExecutionReport() {
+        this.heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(ImmutableList.toImmutableList());
+
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Starts recording.
+     */
+    static ExecutionReport start() {
+        return new ExecutionReport();
+    }
+
+    /**
+     * Writes the report for an execution.
+     *
+     * @param reportFile          The report file.
+     * @param outputJar           The inlined jar.
+     * @param inlinedDependencies Number of inlined dependencies.
+     */
+    void write(File reportFile, File outputJar, int inlinedDependencies) throws IOException {
+        checkNotNull(reportFile, "reportFile is null");
+        checkNotNull(outputJar, "outputJar is null");
+
+        long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        int outputEntries;
+        try (ZipFile zipFile = new ZipFile(outputJar)) {
+            outputEntries = zipFile.size();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("elapsed.millis", Long.toString(elapsedMillis));
+        properties.setProperty("heap.peak.bytes", Long.toString(peakHeapBytes));
+        properties.setProperty("output.bytes", Long.toString(outputJar.length()));
+        properties.setProperty("output.entries", Integer.toString(outputEntries));
+        properties.setProperty("inlined.dependencies", Integer.toString(inlinedDependencies));
+
+        Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(reportFile.toPath())) {
+            properties.store(out, null);
+        }
+    }
+}
@@ -20,10 +20,16 @@ import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import org.basepom.inline.transformer.ClassPath;
-import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarTransformer;
+import org.basepom.inline.transformer.ProcessorTimings;
 import org.basepom.inline.transformer.TransformerException;
+import org.basepom.inline.transformer.TransformerOptions;
+import org.basepom.inline.transformer.asm.InlineRemapper.StringRelocation;
+import org.basepom.inline.transformer.util.WorkerPool;
+import org.basepom.inline.transformer.zip.CompressionPolicy;
+import org.basepom.inline.transformer.zip.ZipArchiveWriter;
+import org.basepom.inline.transformer.zip.ZipEntrySpool;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -37,24 +43,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
 import javax.xml.stream.XMLStreamException;
 
 import com.google.common.base.Functions;
 import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Closer;
 import org.apache.maven.archiver.MavenArchiver;
@@ -92,6 +101,8 @@ public final class InlineMojo extends AbstractMojo {
     private static final Predicate<Dependency> EXCLUDE_SYSTEM_SCOPE = dependency -> !JavaScopes.SYSTEM.equals(dependency.getScope());
     private static final Predicate<Dependency> EXCLUDE_PROVIDED_SCOPE = dependency -> !JavaScopes.PROVIDED.equals(dependency.getScope());
 
+    private static final String STATE_FILE_NAME = "inline-state.properties";
+
 
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
@@ -259,6 +270,73 @@ public final class InlineMojo extends AbstractMojo {
     @Parameter(defaultValue = "inlined")
     private String inlinedClassifierName;
 
+    /**
+     * Number of threads used to rewrite the classes and to compress the entries of the resulting jar. Both share one pool of worker threads, the build
+     * thread takes on work when the workers fall behind. A value of 1 does all work on the build thread. The contents of the resulting jar do not depend
+     * on this setting.
+     */
+    @Parameter(defaultValue = "1", property = "inline.threads")
+    private int threads;
+
+    /**
+     * Compression of the entries in the inlined jar. {@code DEFLATED} compresses all entries, {@code STORED} stores all entries uncompressed (which allows
+     * faster class loading at runtime), {@code AUTO} stores entries that are already compressed (e.g. nested jars or images) or would not get smaller and
+     * compresses all others.
+     */
+    @Parameter(defaultValue = "DEFLATED", property = "inline.compression")
+    private CompressionPolicy.Mode compression;
+
+    /**
+     * Deflate compression level (0-9) for compressed entries. The default of -1 uses the default level of the deflate algorithm. Any other level
+     * recompresses all entries of the inlined jar, including unchanged entries that could otherwise be copied as-is.
+     */
+    @Parameter(defaultValue = "-1", property = "inline.compressionLevel")
+    private int compressionLevel;
+
+    /**
+     * Controls which string constants in the inlined classes are rewritten. {@code HEURISTIC} rewrites all strings that look like the name of a relocated
+     * class or package, {@code EXACT} only rewrites strings that are the name of a relocated class or resource and {@code OFF} does not rewrite any strings.
+     */
+    @Parameter(defaultValue = "HEURISTIC", property = "inline.stringRelocation")
+    private StringRelocation stringRelocation;
+
+    /**
+     * If true, rewritten classes are stored in a persistent cache and reused by later builds that inline the same classes with the same relocation rules.
+     */
+    @Parameter(defaultValue = "false", property = "inline.cache")
+    private boolean cache;
+
+    /**
+     * Location of the persistent class cache. Can be shared by all builds on a machine.
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/inline-cache", property = "inline.cacheDirectory")
+    private File cacheDirectory;
+
+    /**
+     * If true, record fingerprints of all inputs and outputs in the build directory and reuse the inlined jar and POM of the previous execution if nothing
+     * has changed.
+     */
+    @Parameter(defaultValue = "false", property = "inline.incremental")
+    private boolean incremental;
+
+    /**
+     * If true, record the time spent in each jar processor and phase and print a summary at the end of the execution.
+     */
+    @Parameter(defaultValue = "false", property = "inline.timings")
+    private boolean timings;
+
+    /**
+     * If set, execution time, peak heap usage and size of the inlined jar are written to this file whenever the jar is rewritten.
+     */
+    @Parameter(property = "inline.reportFile")
+    private File reportFile;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Parameter(defaultValue = "${plugin.artifacts}", readonly = true)
+    private List<org.apache.maven.artifact.Artifact> pluginArtifacts;
+
     private final Closer closer = Closer.create();
 
 
@@ -279,9 +357,32 @@ public final class InlineMojo extends AbstractMojo {
             throw new MojoExecutionException("No project artifact found!");
         }
 
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new MojoExecutionException(format("Compression level must be between 0 and 9 or -1, was %d", compressionLevel));
+        }
+
         Instant timestamp = MavenArchiver.parseBuildOutputTimestamp(outputTimestamp).orElseGet(Instant::now);
+        // resets the peak usage of the heap pools, only do this if the report was requested.
+        ExecutionReport executionReport = reportFile != null ? ExecutionReport.start() : null;
 
         try {
+            File stateFile = new File(outputDirectory, STATE_FILE_NAME);
+            Optional<String> inputs = incremental ? computeInputs() : Optional.empty();
+            String artifactHash = inputs.isPresent() ? InlineState.hash(project.getArtifact().getFile()) : "";
+
+            if (inputs.isPresent()) {
+                Optional<InlineState> state = InlineState.load(stateFile);
+                if (state.isPresent() && state.get().isUpToDate(inputs.get(), artifactHash)) {
+                    LOG.report(quiet, "Inlined artifact is up to date, reusing %s", state.get().getOutputJar());
+                    publishJarFile(state.get().getOutputJar(), artifactHash.equals(state.get().getOutputJarHash()));
+                    publishPomFile(state.get().getOutputPom());
+                    return;
+                }
+            }
+
+            // never leave a stale state behind if this execution fails.
+            Files.deleteIfExists(stateFile.toPath());
+
             ImmutableSetMultimap.Builder<InlineDependency, Dependency> dependencyBuilder = ImmutableSetMultimap.builder();
             ImmutableSet.Builder<Dependency> pomDependenciesToAdd = ImmutableSet.builder();
 
@@ -290,8 +391,33 @@ public final class InlineMojo extends AbstractMojo {
 
                 ImmutableSetMultimap<InlineDependency, Dependency> dependencyMap = dependencyBuilder.build();
 
-                rewriteJarFile(timestamp.toEpochMilli(), dependencyMap);
-                rewritePomFile(pomDependenciesToAdd.build(), ImmutableSet.copyOf(dependencyMap.values()));
+                File outputJar = (this.outputJarFile != null) ? outputJarFile : inlinedArtifactFileWithClassifier();
+                ProcessorTimings processorTimings = timings ? new ProcessorTimings() : null;
+                Stopwatch rewriteStopwatch = Stopwatch.createStarted();
+                rewriteJarFile(outputJar, timestamp.toEpochMilli(), dependencyMap, processorTimings);
+                rewriteStopwatch.stop();
+                File newPomFile = rewritePomFile(pomDependenciesToAdd.build(), ImmutableSet.copyOf(dependencyMap.values()));
+
+                if (inputs.isPresent()) {
+                    ImmutableSortedMap.Builder<String, String> inlinedFiles = ImmutableSortedMap.naturalOrder();
+                    for (Dependency dependency : ImmutableSet.copyOf(dependencyMap.values())) {
+                        File file = dependency.getArtifact().getFile();
+                        inlinedFiles.put(file.getAbsolutePath(), InlineState.hash(file));
+                    }
+                    new InlineState(inputs.get(), artifactHash, inlinedFiles.build(),
+                            outputJar, InlineState.hash(outputJar), newPomFile, InlineState.hash(newPomFile)).store(stateFile);
+                }
+
+                if (executionReport != null) {
+                    executionReport.write(reportFile, outputJar, ImmutableSet.copyOf(dependencyMap.values()).size());
+                }
+
+                publishJarFile(outputJar, false);
+                publishPomFile(newPomFile);
+
+                if (processorTimings != null) {
+                    logTimings(processorTimings, rewriteStopwatch.elapsed(TimeUnit.MILLISECONDS));
+                }
             } finally {
                 closer.close();
             }
@@ -303,6 +429,50 @@ public final class InlineMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Computes a fingerprint of the plugin configuration, the POM, the resolved project dependencies and the plugin dependencies. Returns an empty optional if any of the
+     * dependencies can not be fingerprinted (e.g. a reactor dependency that is resolved to a class directory).
+     */
+    private Optional<String> computeInputs() throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        Consumer<Object> putValue = value -> hasher.putUnencodedChars(String.valueOf(value)).putChar('\0');
+
+        putValue.accept(pluginVersion);
+        putValue.accept(prefix);
+        putValue.accept(hideClasses);
+        for (InlineDependency inlineDependency : inlineDependencies) {
+            putValue.accept(inlineDependency.getArtifactIdentifier());
+            putValue.accept(inlineDependency.isInlineTransitive());
+            putValue.accept(inlineDependency.isInlineOptionals());
+        }
+        putValue.accept(includes);
+        putValue.accept(excludes);
+        putValue.accept(additionalProcessors);
+        putValue.accept(failOnNoMatch);
+        putValue.accept(failOnDuplicate);
+        putValue.accept(outputJarFile);
+        putValue.accept(outputPomFile);
+        putValue.accept(outputDirectory.getAbsoluteFile());
+        putValue.accept(inlinedArtifactAttached);
+        putValue.accept(replacePomFile);
+        putValue.accept(inlinedClassifierName);
+        putValue.accept(outputTimestamp);
+        putValue.accept(compression);
+        putValue.accept(compressionLevel);
+        putValue.accept(stringRelocation);
+
+        putValue.accept(InlineState.hash(project.getFile()));
+        putValue.accept(InlineState.hash(pomFile));
+
+        // the plugin dependencies (e.g. additional processors) change the output even if the plugin configuration is unchanged.
+        if (!InlineState.hashArtifacts(hasher, project.getArtifacts()) || !InlineState.hashArtifacts(hasher, pluginArtifacts)) {
+            LOG.debug("Disabling up-to-date check");
+            return Optional.empty();
+        }
+
+        return Optional.of(hasher.hash().toString());
+    }
+
     private void computeDependencyMap(
             ImmutableSetMultimap.Builder<InlineDependency, Dependency> dependencyMapBuilder,
             ImmutableSet.Builder<Dependency> pomBuilder)
@@ -467,26 +637,43 @@ public final class InlineMojo extends AbstractMojo {
     }
 
 
-    private void rewriteJarFile(long timestamp, ImmutableSetMultimap<InlineDependency, Dependency> dependencies) throws TransformerException, IOException {
-        File outputJar = (this.outputJarFile != null) ? outputJarFile : inlinedArtifactFileWithClassifier();
+    private void rewriteJarFile(File outputJar, long timestamp, ImmutableSetMultimap<InlineDependency, Dependency> dependencies,
+            ProcessorTimings processorTimings) throws TransformerException, IOException {
+        // rewriting classes and compressing entries share the worker threads.
+        ExecutorService workerPool = threads > 1 ? WorkerPool.create(threads) : null;
+        try (ZipEntrySpool spool = new ZipEntrySpool(outputJar.getAbsoluteFile().getParentFile().toPath(),
+                new CompressionPolicy(compression, compressionLevel), workerPool)) {
+            JarContents jarContents = createJarContents(timestamp, dependencies, spool, workerPool, processorTimings);
 
-        TreeNode treeRoot = createJarContents(timestamp, dependencies);
-
-        try (JarOutputStream jarOutputStream = new JarOutputStream(Files.newOutputStream(outputJar.toPath()))) {
-            var jarConsumer = getJarWriter(jarOutputStream);
+            try (ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(Files.newOutputStream(outputJar.toPath()))) {
+                jarContents.write(zipArchiveWriter);
+            }
+        } finally {
+            if (workerPool != null) {
+                workerPool.shutdownNow();
+            }
+        }
+    }
 
-            // ensure that the MANIFEST file always comes first
-            writeSubtree("META-INF/MANIFEST.MF", treeRoot, jarConsumer);
-            // then write all the META-INF contents
-            writeSubtree("META-INF", treeRoot, jarConsumer);
-            // then all the rest
-            writeSubtree("", treeRoot, jarConsumer);
+    private void logTimings(ProcessorTimings processorTimings, long rewriteMillis) {
+        LOG.info("Processor timings");
+        LOG.info("=================");
+        for (String line : processorTimings.getSummary()) {
+            LOG.info("    %s", line);
         }
+        LOG.info("");
+        // everything that is not spent in the processor chain goes to opening the archives, assembling and writing the jar.
+        LOG.info("Rewriting the jar took %,d ms, %,d ms of that in the processor chain.", rewriteMillis,
+                TimeUnit.NANOSECONDS.toMillis(processorTimings.getTotalNanos()));
+    }
 
+    private void publishJarFile(File outputJar, boolean alreadyReplaced) throws IOException {
         if (this.outputJarFile == null) {
             if (this.inlinedArtifactAttached) {
                 LOG.info("Attaching inlined artifact.");
                 projectHelper.attachArtifact(project, project.getArtifact().getType(), inlinedClassifierName, outputJar);
+            } else if (alreadyReplaced) {
+                LOG.info("Original artifact has already been replaced with inlined artifact.");
             } else {
                 LOG.info("Replacing original artifact with inlined artifact.");
                 File originalArtifact = project.getArtifact().getFile();
@@ -494,13 +681,18 @@ public final class InlineMojo extends AbstractMojo {
                 if (originalArtifact != null) {
                     File backupFile = new File(originalArtifact.getParentFile(), "original-" + originalArtifact.getName());
                     Files.move(originalArtifact.toPath(), backupFile.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
-                    Files.move(outputJar.toPath(), originalArtifact.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                    if (incremental) {
+                        // keep the inlined artifact around so that the next execution can reuse it.
+                        Files.copy(outputJar.toPath(), originalArtifact.toPath(), REPLACE_EXISTING);
+                    } else {
+                        Files.move(outputJar.toPath(), originalArtifact.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                    }
                 }
             }
         }
     }
 
-    private void rewritePomFile(Set<Dependency> dependenciesToAdd, Set<Dependency> dependenciesToRemove) throws IOException, XMLStreamException, JDOMException {
+    private File rewritePomFile(Set<Dependency> dependenciesToAdd, Set<Dependency> dependenciesToRemove) throws IOException, XMLStreamException, JDOMException {
         String pomContents;
 
         try (BufferedReader reader = Files.newBufferedReader(project.getFile().toPath(), StandardCharsets.UTF_8)) {
@@ -520,17 +712,26 @@ public final class InlineMojo extends AbstractMojo {
             pomUtil.writePom(writer);
         }
 
+        return newPomFile;
+    }
+
+    private void publishPomFile(File newPomFile) {
         if (this.replacePomFile) {
             project.setPomFile(newPomFile);
         }
     }
 
-    private TreeNode createJarContents(long timestamp, ImmutableSetMultimap<InlineDependency, Dependency> dependencies)
-            throws TransformerException, IOException {
-        var treeRoot = TreeNode.getRootNode();
+    private JarContents createJarContents(long timestamp, ImmutableSetMultimap<InlineDependency, Dependency> dependencies, ZipEntrySpool spool,
+            ExecutorService workerPool, ProcessorTimings processorTimings) throws TransformerException, IOException {
+        JarContents jarContents = new JarContents(spool);
 
-        Consumer<ClassPathResource> jarConsumer = getJarBuilder(treeRoot);
-        JarTransformer transformer = new JarTransformer(jarConsumer, timestamp, true, ImmutableSet.copyOf(additionalProcessors));
+        TransformerOptions options = TransformerOptions.DEFAULT
+                .withThreads(threads)
+                .withExecutor(workerPool)
+                .withCacheDirectory(cache ? cacheDirectory.toPath() : null)
+                .withTimings(processorTimings)
+                .withStringRelocation(stringRelocation);
+        JarTransformer transformer = new JarTransformer(jarContents, timestamp, true, ImmutableSet.copyOf(additionalProcessors), options);
 
         // Build the class path
         ClassPath classPath = new ClassPath(project.getBasedir(), timestamp, closer);
@@ -548,74 +749,7 @@ public final class InlineMojo extends AbstractMojo {
 
         transformer.transform(classPath);
 
-        return treeRoot;
-    }
-
-    private void writeSubtree(String name, TreeNode root, Consumer<ClassPathResource> jarWriter) {
-        List<String> elements = Splitter.on('/').omitEmptyStrings().splitToList(name);
-
-        // navigate to the parent node, writing elements on the way.
-        TreeNode parent = root;
-        for (String element : elements) {
-            TreeNode child = parent.getChild(element);
-            checkState(child != null, "Could not find child '%s' for parent '%s' (%s)", element, parent.getName(), name);
-            if (child.needsWriting()) {
-                jarWriter.accept(child.getClassPathResource());
-                child.write();
-            }
-            parent = child;
-        }
-
-        writeChildrenDepthFirst(parent, jarWriter);
-    }
-
-    private void writeChildrenDepthFirst(TreeNode writeNode, Consumer<ClassPathResource> jarWriter) {
-        if (writeNode.needsWriting()) {
-            jarWriter.accept(writeNode.getClassPathResource());
-            writeNode.write();
-        }
-
-        var children = writeNode.getChildren();
-        if (children.isEmpty()) {
-            return;
-        }
-
-        for (var childNode : children.values()) {
-            writeChildrenDepthFirst(childNode, jarWriter);
-        }
-    }
-
-    private Consumer<ClassPathResource> getJarWriter(JarOutputStream jarOutputStream) {
-        return classPathResource -> {
-            try {
-                String name = classPathResource.getName();
-                LOG.debug(format("Writing '%s' to jar", name));
-                JarEntry outputEntry = new JarEntry(name);
-                outputEntry.setTime(classPathResource.getLastModifiedTime());
-                outputEntry.setCompressedSize(-1);
-                jarOutputStream.putNextEntry(outputEntry);
-                jarOutputStream.write(classPathResource.getContent());
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        };
-    }
-
-    private Consumer<ClassPathResource> getJarBuilder(TreeNode root) {
-        return classPathResource -> {
-            String name = classPathResource.getName();
-            LOG.debug(format("Adding '%s' to jar", name));
-
-            List<String> elements = Splitter.on('/').omitEmptyStrings().splitToList(name);
-
-            TreeNode parent = root;
-            for (int i = 0; i < elements.size() - 1; i++) {
-                var child = parent.getChild(elements.get(i));
-                checkState(child != null, "Could not locate child '%s' in parent element '%s', this is a transformer problem!", elements.get(i), parent);
-                parent = child;
-            }
-            parent.addChild(elements.get(elements.size() - 1), classPathResource);
-        };
+        return jarContents;
     }
 
     private File inlinedArtifactFileWithClassifier() {
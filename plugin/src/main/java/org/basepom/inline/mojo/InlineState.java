@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.mojo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Fingerprints of the inputs and outputs of an execution. The state is stored in the build directory after each execution and allows the next execution
+ * to reuse the inlined jar and POM if nothing has changed.
+ */
+final class InlineState {
+
+    private static final PluginLog LOG = new PluginLog(InlineState.class);
+
+    // change this whenever the stored properties change.
+    private static final String VERSION = "1";
+
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_INPUTS = "inputs";
+    private static final String KEY_ARTIFACT = "artifact";
+    private static final String KEY_OUTPUT_JAR = "output.jar";
+    private static final String KEY_OUTPUT_JAR_HASH = "output.jar.hash";
+    private static final String KEY_OUTPUT_POM = "output.pom";
+    private static final String KEY_OUTPUT_POM_HASH = "output.pom.hash";
+    private static final String KEY_INLINED_PREFIX = "inlined.";
+
+    private final String inputs;
+    private final String artifactHash;
+    private final ImmutableSortedMap<String, String> inlinedFiles;
+    private final File outputJar;
+    private final String outputJarHash;
+    private final File outputPom;
+    private final String outputPomHash;
+
+    /**
+     * Creates a new state.
+     *
+     * @param inputs        Fingerprint of the plugin configuration, the POM and the project dependencies.
+     * @param artifactHash  Hash of the project artifact before inlining.
+     * @param inlinedFiles  Hashes of all inlined dependency files, indexed by file name.
+     * @param outputJar     The inlined jar.
+     * @param outputJarHash Hash of the inlined jar.
+     * @param outputPom     The rewritten POM.
+     * @param outputPomHash Hash of the rewritten POM.
+     */
+    InlineState(String inputs, String artifactHash, Map<String, String> inlinedFiles, File outputJar, String outputJarHash,
+            File outputPom, String outputPomHash) {
+        this.inputs = checkNotNull(inputs, "inputs is null");
+        this.artifactHash = checkNotNull(artifactHash, "artifactHash is null");
+        this.inlinedFiles = ImmutableSortedMap.copyOf(inlinedFiles);
+        this.outputJar = checkNotNull(outputJar, "outputJar is null");
+        this.outputJarHash = checkNotNull(outputJarHash, "outputJarHash is null");
+        this.outputPom = checkNotNull(outputPom, "outputPom is null");
+        this.outputPomHash = checkNotNull(outputPomHash, "outputPomHash is null");
+    }
+
+    /**
+     * Loads a stored state. Returns an empty optional if the file does not exist, is incomplete or was written by a different version.
+     */
+    static Optional<InlineState> load(File file) throws IOException {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+
+        if (!VERSION.equals(properties.getProperty(KEY_VERSION))) {
+            return Optional.empty();
+        }
+
+        ImmutableSortedMap.Builder<String, String> inlinedFiles = ImmutableSortedMap.naturalOrder();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(KEY_INLINED_PREFIX)) {
+                inlinedFiles.put(key.substring(KEY_INLINED_PREFIX.length()), properties.getProperty(key));
+            }
+        }
+
+        String inputs = properties.getProperty(KEY_INPUTS);
+        String artifactHash = properties.getProperty(KEY_ARTIFACT);
+        String outputJar = properties.getProperty(KEY_OUTPUT_JAR);
+        String outputJarHash = properties.getProperty(KEY_OUTPUT_JAR_HASH);
+        String outputPom = properties.getProperty(KEY_OUTPUT_POM);
+        String outputPomHash = properties.getProperty(KEY_OUTPUT_POM_HASH);
+
+        if (inputs == null || artifactHash == null || outputJar == null || outputJarHash == null || outputPom == null || outputPomHash == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new InlineState(inputs, artifactHash, inlinedFiles.build(), new File(outputJar), outputJarHash, new File(outputPom),
+                outputPomHash));
+    }
+
+    void store(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_VERSION, VERSION);
+        properties.setProperty(KEY_INPUTS, inputs);
+        properties.setProperty(KEY_ARTIFACT, artifactHash);
+        inlinedFiles.forEach((name, hash) -> properties.setProperty(KEY_INLINED_PREFIX + name, hash));
+        properties.setProperty(KEY_OUTPUT_JAR, outputJar.getAbsolutePath());
+        properties.setProperty(KEY_OUTPUT_JAR_HASH, outputJarHash);
+        properties.setProperty(KEY_OUTPUT_POM, outputPom.getAbsolutePath());
+        properties.setProperty(KEY_OUTPUT_POM_HASH, outputPomHash);
+
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * Returns true if the stored outputs are still valid for the given inputs.
+     *
+     * @param currentInputs       Fingerprint of the current plugin configuration, POM and project dependencies.
+     * @param currentArtifactHash Hash of the current project artifact. This may also be the hash of the inlined jar if it already replaced the project
+     *                            artifact.
+     */
+    boolean isUpToDate(String currentInputs, String currentArtifactHash) throws IOException {
+        if (!inputs.equals(currentInputs)) {
+            return false;
+        }
+        if (!artifactHash.equals(currentArtifactHash) && !outputJarHash.equals(currentArtifactHash)) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : inlinedFiles.entrySet()) {
+            if (!entry.getValue().equals(hash(new File(entry.getKey())))) {
+                return false;
+            }
+        }
+        return outputJarHash.equals(hash(outputJar)) && outputPomHash.equals(hash(outputPom));
+    }
+
+    File getOutputJar() {
+        return outputJar;
+    }
+
+    File getOutputPom() {
+        return outputPom;
+    }
+
+    String getOutputJarHash() {
+        return outputJarHash;
+    }
+
+    /**
+     * Adds the coordinates and the file hashes of a set of artifacts to a fingerprint. Returns false if any of the artifacts can not be fingerprinted
+     * (e.g. a reactor dependency that is resolved to a class directory).
+     */
+    static boolean hashArtifacts(Hasher hasher, Collection<Artifact> artifacts) throws IOException {
+        List<Artifact> sortedArtifacts = artifacts.stream()
+                .sorted(Comparator.comparing(Artifact::getId))
+                .collect(Collectors.toList());
+
+        for (Artifact artifact : sortedArtifacts) {
+            File file = artifact.getFile();
+            if (file == null || !file.isFile()) {
+                LOG.debug("Can not fingerprint %s", artifact);
+                return false;
+            }
+            hasher.putUnencodedChars(artifact.getId()).putChar('\0');
+            hasher.putUnencodedChars(hash(file)).putChar('\0');
+        }
+        return true;
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file or an empty string if the file does not exist.
+     */
+    static String hash(File file) throws IOException {
+        if (!file.isFile()) {
+            return "";
+        }
+        return com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).toString();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.mojo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.ClassPathResource;
+import org.basepom.inline.transformer.zip.ZipArchiveWriter;
+import org.basepom.inline.transformer.zip.ZipEntrySpool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Contents of the inlined jar. Receives all resources from the transformer and writes them so that the MANIFEST file comes first, then all files from
+ * the META-INF directory, then all the folders and files in "natural" order.
+ */
+public final class JarContents implements Consumer<ClassPathResource> {
+
+    private static final PluginLog LOG = new PluginLog(JarContents.class);
+
+    private final TreeNode root = TreeNode.getRootNode();
+    private final ZipEntrySpool spool;
+
+    /**
+     * Creates new jar contents.
+     *
+     * @param spool Holds the compressed content of all modified resources until the jar is written.
+     */
+    public JarContents(ZipEntrySpool spool) {
+        this.spool = checkNotNull(spool, "spool is null");
+    }
+
+    @Override
+    public void accept(ClassPathResource classPathResource) {
+        String name = classPathResource.getName();
+        LOG.debug(format("Adding '%s' to jar", name));
+
+        List<String> elements = Splitter.on('/').omitEmptyStrings().splitToList(name);
+
+        TreeNode parent = root;
+        for (int i = 0; i < elements.size() - 1; i++) {
+            var child = parent.getChild(elements.get(i));
+            checkState(child != null, "Could not locate child '%s' in parent element '%s', this is a transformer problem!", elements.get(i), parent);
+            parent = child;
+        }
+        String childName = elements.get(elements.size() - 1);
+        if (parent.getChild(childName) == null) {
+            // only the location of the content is kept, the content itself is compressed into the spool and released.
+            parent.addChild(childName, OutputEntry.forResource(classPathResource, spool));
+        }
+    }
+
+    /**
+     * Writes all entries to the jar. Can only be called once.
+     */
+    public void write(ZipArchiveWriter zipArchiveWriter) throws IOException {
+        checkNotNull(zipArchiveWriter, "zipArchiveWriter is null");
+
+        Consumer<OutputEntry> jarWriter = outputEntry -> {
+            try {
+                LOG.debug(format("Writing '%s' to jar", outputEntry.getName()));
+                outputEntry.write(zipArchiveWriter, spool);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        try {
+            // ensure that the MANIFEST file always comes first
+            writeSubtree("META-INF/MANIFEST.MF", jarWriter);
+            // then write all the META-INF contents
+            writeSubtree("META-INF", jarWriter);
+            // then all the rest
+            writeSubtree("", jarWriter);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeSubtree(String name, Consumer<OutputEntry> jarWriter) {
+        List<String> elements = Splitter.on('/').omitEmptyStrings().splitToList(name);
+
+        // navigate to the parent node, writing elements on the way.
+        TreeNode parent = root;
+        for (String element : elements) {
+            TreeNode child = parent.getChild(element);
+            checkState(child != null, "Could not find child '%s' for parent '%s' (%s)", element, parent.getName(), name);
+            if (child.needsWriting()) {
+                jarWriter.accept(child.getOutputEntry());
+                child.write();
+            }
+            parent = child;
+        }
+
+        writeChildrenDepthFirst(parent, jarWriter);
+    }
+
+    private static void writeChildrenDepthFirst(TreeNode writeNode, Consumer<OutputEntry> jarWriter) {
+        if (writeNode.needsWriting()) {
+            jarWriter.accept(writeNode.getOutputEntry());
+            writeNode.write();
+        }
+
+        var children = writeNode.getChildren();
+        if (children.isEmpty()) {
+            return;
+        }
+
+        for (var childNode : children.values()) {
+            writeChildrenDepthFirst(childNode, jarWriter);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.mojo;
+
+import org.basepom.inline.transformer.ClassPathResource;
+import org.basepom.inline.transformer.zip.MappedZipEntry;
+import org.basepom.inline.transformer.zip.SpooledZipEntry;
+import org.basepom.inline.transformer.zip.ZipArchiveWriter;
+import org.basepom.inline.transformer.zip.ZipEntrySpool;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.Future;
+
+/**
+ * An entry of the output jar. Holds only the location of the entry data, either in a source archive (for unmodified entries) or in the spool, never the
+ * content itself.
+ */
+public final class OutputEntry {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String name;
+    private final long lastModifiedTime;
+    private final MappedZipEntry unmodifiedEntry;
+    private final Future<SpooledZipEntry> spooledEntry;
+
+    /**
+     * Creates an output entry for a resource. Modified content is submitted to the spool for compression, so the resource content can be released as soon as
+     * it has been compressed.
+     */
+    public static OutputEntry forResource(ClassPathResource classPathResource, ZipEntrySpool spool) {
+        String name = classPathResource.getName();
+        long lastModifiedTime = classPathResource.getLastModifiedTime();
+
+        if (name.endsWith("/")) {
+            return new OutputEntry(name, lastModifiedTime, null, null);
+        }
+
+        Optional<MappedZipEntry> unmodifiedEntry = classPathResource.getUnmodifiedEntry()
+                .filter(spool.getCompressionPolicy()::isRawCopyAllowed);
+        if (unmodifiedEntry.isPresent()) {
+            return new OutputEntry(name, lastModifiedTime, unmodifiedEntry.get(), null);
+        }
+
+        return new OutputEntry(name, lastModifiedTime, null, spool.submit(name, classPathResource::getContent));
+    }
+
+    private OutputEntry(String name, long lastModifiedTime, MappedZipEntry unmodifiedEntry, Future<SpooledZipEntry> spooledEntry) {
+        this.name = name;
+        this.lastModifiedTime = lastModifiedTime;
+        this.unmodifiedEntry = unmodifiedEntry;
+        this.spooledEntry = spooledEntry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void write(ZipArchiveWriter zipArchiveWriter, ZipEntrySpool spool) throws IOException {
+        if (unmodifiedEntry != null) {
+            // unmodified entries are copied as-is, without inflating and deflating them again.
+            zipArchiveWriter.writeRawEntry(name, lastModifiedTime, unmodifiedEntry);
+        } else if (spooledEntry != null) {
+            zipArchiveWriter.writeSpooledEntry(name, lastModifiedTime, spool, ZipEntrySpool.getEntry(spooledEntry));
+        } else {
+            zipArchiveWriter.writeEntry(name, lastModifiedTime, EMPTY);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", OutputEntry.class.getSimpleName() + "[", "]")
+                .add("name='" + name + "'")
+                .add("lastModifiedTime=" + lastModifiedTime)
+                .add("unmodifiedEntry=" + unmodifiedEntry)
+                .add("spooledEntry=" + spooledEntry)
+                .toString();
+    }
+}
@@ -14,8 +14,6 @@
 
 package org.basepom.inline.mojo;
 
-import org.basepom.inline.transformer.ClassPathResource;
-
 import java.util.SortedMap;
 import java.util.StringJoiner;
 import java.util.TreeMap;
@@ -25,7 +23,7 @@ import com.google.common.base.Strings;
 public final class TreeNode {
 
     private final String name;
-    private final ClassPathResource classPathResource;
+    private final OutputEntry outputEntry;
 
     private final SortedMap<String, TreeNode> children = new TreeMap<>();
     private boolean written = false;
@@ -36,13 +34,13 @@ public final class TreeNode {
         return rootNode;
     }
 
-    public TreeNode(String name, ClassPathResource classPathResource) {
+    public TreeNode(String name, OutputEntry outputEntry) {
         this.name = name;
-        this.classPathResource = classPathResource;
+        this.outputEntry = outputEntry;
     }
 
-    public void addChild(String childName, ClassPathResource classPathResource) {
-        children.computeIfAbsent(childName, k -> new TreeNode(childName, classPathResource));
+    public void addChild(String childName, OutputEntry outputEntry) {
+        children.computeIfAbsent(childName, k -> new TreeNode(childName, outputEntry));
     }
 
     public TreeNode getChild(String childName) {
@@ -53,8 +51,8 @@ public final class TreeNode {
         return name;
     }
 
-    public ClassPathResource getClassPathResource() {
-        return classPathResource;
+    public OutputEntry getOutputEntry() {
+        return outputEntry;
     }
 
     public SortedMap<String, TreeNode> getChildren() {
@@ -92,7 +90,7 @@ public final class TreeNode {
         var result = new StringJoiner(", ", TreeNode.class.getSimpleName() + "[", "]")
                 .add("name='" + name + "'")
                 .add("written=" + written)
-                .add("classPathResource=" + classPathResource);
+                .add("outputEntry=" + outputEntry);
 
         return Strings.repeat(" ", indent) + result;
     }
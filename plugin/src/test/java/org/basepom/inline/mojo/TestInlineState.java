@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.mojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestInlineState {
+
+    @Test
+    public void testUpToDate(@TempDir Path tempDir) throws Exception {
+        File artifact = write(tempDir, "artifact.jar", "artifact");
+        File inlined = write(tempDir, "inlined.jar", "inlined");
+        File outputJar = write(tempDir, "output.jar", "output");
+        File outputPom = write(tempDir, "new-pom.xml", "pom");
+        File stateFile = tempDir.resolve("state/inline-state.properties").toFile();
+
+        String artifactHash = InlineState.hash(artifact);
+        new InlineState("inputs", artifactHash, ImmutableMap.of(inlined.getAbsolutePath(), InlineState.hash(inlined)),
+                outputJar, InlineState.hash(outputJar), outputPom, InlineState.hash(outputPom)).store(stateFile);
+
+        Optional<InlineState> state = InlineState.load(stateFile);
+        assertTrue(state.isPresent());
+        assertTrue(state.get().isUpToDate("inputs", artifactHash));
+        // the artifact may already have been replaced by the inlined jar.
+        assertTrue(state.get().isUpToDate("inputs", InlineState.hash(outputJar)));
+
+        assertFalse(state.get().isUpToDate("other inputs", artifactHash));
+        assertFalse(state.get().isUpToDate("inputs", InlineState.hash(inlined)));
+
+        write(tempDir, "inlined.jar", "changed");
+        assertFalse(state.get().isUpToDate("inputs", artifactHash));
+    }
+
+    @Test
+    public void testMissingOutput(@TempDir Path tempDir) throws Exception {
+        File outputJar = write(tempDir, "output.jar", "output");
+        File outputPom = write(tempDir, "new-pom.xml", "pom");
+        File stateFile = tempDir.resolve("inline-state.properties").toFile();
+
+        new InlineState("inputs", "", ImmutableMap.of(), outputJar, InlineState.hash(outputJar), outputPom, InlineState.hash(outputPom)).store(stateFile);
+        assertTrue(InlineState.load(stateFile).orElseThrow().isUpToDate("inputs", ""));
+
+        Files.delete(outputJar.toPath());
+        assertFalse(InlineState.load(stateFile).orElseThrow().isUpToDate("inputs", ""));
+    }
+
+    @Test
+    public void testNoState(@TempDir Path tempDir) throws Exception {
+        assertFalse(InlineState.load(tempDir.resolve("inline-state.properties").toFile()).isPresent());
+
+        File stateFile = write(tempDir, "inline-state.properties", "version=0\n");
+        assertFalse(InlineState.load(stateFile).isPresent());
+    }
+
+    @Test
+    public void testPluginArtifactChanged(@TempDir Path tempDir) throws Exception {
+        File processor = write(tempDir, "processor.jar", "processor");
+        List<Artifact> projectArtifacts = ImmutableList.of(artifact("org.example", "dependency", "1.0", write(tempDir, "dependency.jar", "dependency")));
+
+        String inputs = fingerprint(projectArtifacts, ImmutableList.of(artifact("org.example", "processor", "1.0", processor)));
+        assertEquals(inputs, fingerprint(projectArtifacts, ImmutableList.of(artifact("org.example", "processor", "1.0", processor))));
+
+        File outputJar = write(tempDir, "output.jar", "output");
+        File outputPom = write(tempDir, "new-pom.xml", "pom");
+        InlineState state = new InlineState(inputs, "", ImmutableMap.of(), outputJar, InlineState.hash(outputJar), outputPom, InlineState.hash(outputPom));
+        assertTrue(state.isUpToDate(inputs, ""));
+
+        // a new version of a plugin dependency
+        String newVersion = fingerprint(projectArtifacts, ImmutableList.of(artifact("org.example", "processor", "1.1", processor)));
+        assertNotEquals(inputs, newVersion);
+        assertFalse(state.isUpToDate(newVersion, ""));
+
+        // a rebuilt snapshot of a plugin dependency
+        write(tempDir, "processor.jar", "changed processor");
+        String newContent = fingerprint(projectArtifacts, ImmutableList.of(artifact("org.example", "processor", "1.0", processor)));
+        assertNotEquals(inputs, newContent);
+        assertFalse(state.isUpToDate(newContent, ""));
+    }
+
+    private static String fingerprint(List<Artifact> projectArtifacts, List<Artifact> pluginArtifacts) throws Exception {
+        Hasher hasher = Hashing.sha256().newHasher();
+        assertTrue(InlineState.hashArtifacts(hasher, projectArtifacts));
+        assertTrue(InlineState.hashArtifacts(hasher, pluginArtifacts));
+        return hasher.hash().toString();
+    }
+
+    private static Artifact artifact(String groupId, String artifactId, String version, File file) {
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, version, "runtime", "jar", null, new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+
+    private static File write(Path directory, String name, String content) throws Exception {
+        Path file = directory.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent, content addressed cache for rewritten class files. Entries are keyed by the bytes of the original class, a fingerprint of the
+ * relocation rules and a fingerprint of the code that rewrites the classes (this module and ASM), so a cached class can be reused by every build
+ * that inlines the same class with the same rules and the same plugin build.
+ * <p>
+ * Each entry stores the name of the rewritten class in front of its bytes, so the name can be looked up without reading the class.
+ * <p>
+ * The cache is best effort. Any problem reading or writing an entry is logged and the class is rewritten as if the cache did not exist.
+ */
+public final class ClassCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassCache.class);
+
+    // change this whenever the rewritten bytes for the same input and rules change or the entry layout changes.
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path directory;
+    private final Supplier<String> fingerprint;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory        The cache directory. It is created when the first entry is stored.
+     * @param rulesFingerprint Returns the fingerprint of the relocation rules. Only called once, when the first class is looked up.
+     */
+    public ClassCache(Path directory, Supplier<String> rulesFingerprint) {
+        this.directory = checkNotNull(directory, "directory is null");
+        checkNotNull(rulesFingerprint, "rulesFingerprint is null");
+
+        this.fingerprint = Suppliers.memoize(() -> {
+            Hasher hasher = Hashing.sha256().newHasher()
+                    .putInt(FORMAT_VERSION)
+                    .putUnencodedChars(rulesFingerprint.get());
+            putCodeFingerprint(hasher, ClassCache.class);
+            putCodeFingerprint(hasher, ClassReader.class);
+            putCodeFingerprint(hasher, ClassRemapper.class);
+            return hasher.hash().toString();
+        });
+    }
+
+    /**
+     * Returns the cache key for a class. Computing the key hashes the class, so callers that look up the same class more than once should keep it.
+     */
+    public String getKey(byte[] classBytes) {
+        return Hashing.sha256().newHasher()
+                .putUnencodedChars(fingerprint.get())
+                .putBytes(classBytes)
+                .hash()
+                .toString();
+    }
+
+    /**
+     * Returns the internal name of the rewritten class or null if the class is not in the cache. Only reads the start of the entry.
+     */
+    @CheckForNull
+    public String getClassName(String key) {
+        Path entry = entryPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry), 512))) {
+            return in.readUTF();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn(format("Could not read cache entry %s", entry), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the rewritten bytes for a class or null if the class is not in the cache.
+     */
+    @CheckForNull
+    public byte[] get(String key) {
+        Path entry = entryPath(key);
+        try {
+            byte[] data = Files.readAllBytes(entry);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            in.readUTF();
+            return Arrays.copyOfRange(data, data.length - in.available(), data.length);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn(format("Could not read cache entry %s", entry), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the rewritten bytes for a class.
+     *
+     * @param key            The key returned by {@link #getKey(byte[])} for the original class.
+     * @param className      The internal name of the rewritten class.
+     * @param rewrittenBytes The rewritten class.
+     */
+    public void put(String key, String className, byte[] rewrittenBytes) {
+        Path entry = entryPath(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            // other builds may read the same entry concurrently, so it must appear atomically.
+            Path tempFile = Files.createTempFile(entry.getParent(), "tmp-", ".class");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    out.writeUTF(className);
+                    out.write(rewrittenBytes);
+                }
+                try {
+                    Files.move(tempFile, entry, ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, entry, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            LOG.warn(format("Could not write cache entry %s", entry), e);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ".class");
+    }
+
+    // hashes the jar (or class directory) that contains a class. Falls back to the implementation version if the code can not be located.
+    private static void putCodeFingerprint(Hasher hasher, Class<?> type) {
+        try {
+            CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                Path location = Paths.get(codeSource.getLocation().toURI());
+                if (Files.isRegularFile(location)) {
+                    hasher.putBytes(MoreFiles.asByteSource(location).hash(Hashing.sha256()).asBytes());
+                    return;
+                } else if (Files.isDirectory(location)) {
+                    // classes from a build directory, e.g. when running from an IDE or the reactor.
+                    try (Stream<Path> files = Files.walk(location)) {
+                        for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                            hasher.putUnencodedChars(location.relativize(file).toString())
+                                    .putBytes(MoreFiles.asByteSource(file).hash(Hashing.sha256()).asBytes());
+                        }
+                    }
+                    return;
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOG.debug(format("Could not fingerprint the code of %s", type.getName()), e);
+        }
+        hasher.putUnencodedChars(type.getName())
+                .putUnencodedChars(Objects.toString(type.getPackage().getImplementationVersion(), ""));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + directory + ")";
+    }
+}
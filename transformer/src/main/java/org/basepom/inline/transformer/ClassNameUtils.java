@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nonnull;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 
@@ -59,13 +60,20 @@ public final class ClassNameUtils {
             return false;
         }
 
-        if (value.codePoints().filter(Character::isWhitespace).findFirst().isPresent()) {
-            return false;
+        // single pass, rejects the value at the first whitespace.
+        int validChars = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            if (Character.isWhitespace(codePoint)) {
+                return false;
+            }
+            if (Character.isJavaIdentifierPart(codePoint)) {
+                validChars++;
+            }
+            i += Character.charCount(codePoint);
         }
 
         double count = value.length();
-        double validChars = value.codePoints().filter(Character::isJavaIdentifierPart).count();
-
         return validChars / count > 0.7;  // io.foo.Bar = 8 / 11 ~ 0.72
     }
 
@@ -104,6 +112,75 @@ public final class ClassNameUtils {
         return Splitter.on('/').trimResults().splitToList(path);
     }
 
+    /**
+     * Returns the number of elements in the path. Same as {@code pathToElements(path).size()} without splitting the path.
+     */
+    public static int elementCount(String path) {
+        int count = 1;
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the element at the given index is equal to the value. Same as {@code pathToElements(path).get(index).equals(value)} without
+     * splitting the path.
+     */
+    public static boolean elementEquals(String path, int index, String value) {
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            start = path.indexOf('/', start) + 1;
+            if (start == 0) {
+                return false;
+            }
+        }
+        int end = path.indexOf('/', start);
+        return regionEquals(path, start, end < 0 ? path.length() : end, value);
+    }
+
+    /**
+     * Returns true if the last element of the path is equal to the value.
+     */
+    public static boolean lastElementEquals(String path, String value) {
+        return regionEquals(path, path.lastIndexOf('/') + 1, path.length(), value);
+    }
+
+    /**
+     * Returns true if the last element of the path ends with the suffix.
+     */
+    public static boolean lastElementEndsWith(String path, String suffix) {
+        int start = path.lastIndexOf('/') + 1;
+        int end = trimEnd(path, start, path.length());
+        return end - start >= suffix.length() && path.startsWith(suffix, end - suffix.length());
+    }
+
+    /**
+     * Returns the start of the path element that begins at the given position, with leading whitespace removed (see {@link #pathToElements(String)}).
+     */
+    public static int trimStart(String path, int start, int end) {
+        while (start < end && CharMatcher.whitespace().matches(path.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the end of the path element that ends at the given position, with trailing whitespace removed (see {@link #pathToElements(String)}).
+     */
+    public static int trimEnd(String path, int start, int end) {
+        while (end > start && CharMatcher.whitespace().matches(path.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean regionEquals(String path, int start, int end, String value) {
+        start = trimStart(path, start, end);
+        end = trimEnd(path, start, end);
+        return end - start == value.length() && path.startsWith(value, start);
+    }
+
     public static String elementsToPath(List<String> elements) {
         return Joiner.on('/').join(elements);
     }
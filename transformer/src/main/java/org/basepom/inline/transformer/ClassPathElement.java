@@ -15,15 +15,19 @@
 package org.basepom.inline.transformer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
 import static org.basepom.inline.transformer.util.ExceptionUtil.wrapIOException;
 
-import java.io.Closeable;
+import org.basepom.inline.transformer.zip.MappedZipEntry;
+import org.basepom.inline.transformer.zip.MappedZipFile;
+
 import java.io.File;
-import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import javax.annotation.Nonnull;
 
@@ -33,14 +37,22 @@ import com.google.common.collect.Iterators;
 import com.google.common.io.Closer;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * An element (jar or directory) on the class path. The entries of an element are listed once, the first time it is iterated. All following iterations
+ * (one for each transformer phase) reuse this index and return fresh {@link ClassPathResource} instances for the entries.
+ */
 @SuppressWarnings("PMD.ClassWithOnlyPrivateConstructorsShouldBeFinal")
 public abstract class ClassPathElement implements Iterable<ClassPathResource> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ClassPathElement.class);
+
     private final File archiveFile;
     private final boolean hideClasses;
     private final String prefix;
-    private final ImmutableSet<ClassPathTag> tags;
+    private final int tagMask;
     private final String groupId;
     private final String artifactId;
 
@@ -48,19 +60,9 @@ public abstract class ClassPathElement implements Iterable<ClassPathResource> {
             String artifactId, boolean hideClasses, long timestamp, ClassPathTag... tags) {
 
         if (file.isDirectory()) {
-            return new ClassPathElement(file, prefix, groupId, artifactId, hideClasses, tags) {
-                @Override
-                public Iterator<ClassPathResource> iterator() {
-                    return new DirectoryIterator(file, timestamp);
-                }
-            };
+            return new DirectoryElement(file, prefix, groupId, artifactId, hideClasses, timestamp, tags);
         } else {
-            return new ClassPathElement(file, prefix, groupId, artifactId, hideClasses, tags) {
-                @Override
-                public Iterator<ClassPathResource> iterator() {
-                    return wrapIOException(() -> new ZipIterator(file, closer));
-                }
-            };
+            return new ZipElement(file, closer, prefix, groupId, artifactId, hideClasses, tags);
         }
     }
 
@@ -70,7 +72,7 @@ public abstract class ClassPathElement implements Iterable<ClassPathResource> {
         this.groupId = groupId;
         this.artifactId = artifactId;
         this.hideClasses = hideClasses;
-        this.tags = ImmutableSet.copyOf(tags);
+        this.tagMask = ClassPathTag.mask(tags);
     }
 
     @Nonnull
@@ -88,7 +90,11 @@ public abstract class ClassPathElement implements Iterable<ClassPathResource> {
     }
 
     public ImmutableSet<ClassPathTag> getTags() {
-        return tags;
+        return ClassPathTag.fromMask(tagMask);
+    }
+
+    int getTagMask() {
+        return tagMask;
     }
 
     public String getGroupId() {
@@ -102,83 +108,91 @@ public abstract class ClassPathElement implements Iterable<ClassPathResource> {
     @Override
     public abstract Iterator<ClassPathResource> iterator();
 
-    private class ZipIterator implements Iterator<ClassPathResource>, Closeable {
+    private static final class ZipElement extends ClassPathElement {
 
-        private final ZipFile zipFile;
-        private final Iterator<? extends ZipEntry> zipEntries;
+        private final Closer closer;
 
-        ZipIterator(@Nonnull File archiveFile, Closer closer) throws IOException {
-            this.zipFile = new ZipFile(archiveFile);
-            closer.register(zipFile);
+        private ImmutableList<MappedZipEntry> mappedEntries;
 
-            this.zipEntries = Iterators.forEnumeration(zipFile.entries());
-        }
+        private ZipFile zipFile;
+        private ImmutableList<ZipEntry> entries;
 
-        @Override
-        public boolean hasNext() {
-            if (zipEntries.hasNext()) {
-                return true;
-            }
-            close();
-            return false;
-        }
-
-        @Override
-        public ClassPathResource next() {
-            return ClassPathResource.fromZipEntry(ClassPathElement.this, zipFile, zipEntries.next(), tags);
+        private ZipElement(@Nonnull File archiveFile, Closer closer, @Nullable String prefix, String groupId, String artifactId, boolean hideClasses,
+                ClassPathTag... tags) {
+            super(archiveFile, prefix, groupId, artifactId, hideClasses, tags);
+            this.closer = checkNotNull(closer, "closer is null");
         }
 
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
+        public Iterator<ClassPathResource> iterator() {
+            if (mappedEntries == null && entries == null) {
+                open();
+            }
 
-        @Override
-        public void close() {
-            // do nothing, especially not close the zip file. With the required reording for the jar contents,
-            // reading of the data happens outside the iteration of the zip file and if the zip file is closed,
-            // it can no longer be read.
+            if (mappedEntries != null) {
+                return Iterators.transform(mappedEntries.iterator(), entry -> ClassPathResource.fromMappedZipEntry(this, entry, super.tagMask));
+            } else {
+                return Iterators.transform(entries.iterator(), entry -> ClassPathResource.fromZipEntry(this, zipFile, entry, super.tagMask));
+            }
         }
-    }
 
-    private void findClassFiles(@Nonnull ImmutableList.Builder<ClassPathResource> out, long timestamp, @Nonnull File dir) {
-        final File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    findClassFiles(out, timestamp, file);
-                } else if (file.isFile()) {
-                    out.add(ClassPathResource.fromFile(this, file, timestamp, tags));
+        private void open() {
+            // The zip file is opened once and stays open until the closer is closed. With the required reordering for the jar contents,
+            // reading of the data happens outside the iteration of the zip file and if the zip file is closed, it can no longer be read.
+            try {
+                // the root jar is replaced with the inlined jar after the transformation. A mapping would keep it locked on Windows, so it is never mapped.
+                boolean rootJar = getTags().contains(ClassPathTag.ROOT_JAR);
+                MappedZipFile mappedZipFile = wrapIOException(() -> closer.register(rootJar
+                        ? MappedZipFile.openUnmapped(super.archiveFile)
+                        : MappedZipFile.open(super.archiveFile)));
+                this.mappedEntries = mappedZipFile.entries();
+            } catch (UncheckedIOException e) {
+                if (!(e.getCause() instanceof ZipException)) {
+                    throw e;
                 }
+                // archives that can not be mapped are read with the JDK zip implementation.
+                LOG.debug(format("Falling back to ZipFile for %s: %s", super.archiveFile, e.getCause().getMessage()));
+                this.zipFile = wrapIOException(() -> closer.register(new ZipFile(super.archiveFile)));
+                this.entries = ImmutableList.copyOf(Iterators.forEnumeration(zipFile.entries()));
             }
         }
     }
 
-    private class DirectoryIterator implements Iterator<ClassPathResource> {
+    private static final class DirectoryElement extends ClassPathElement {
 
-        private final Iterator<ClassPathResource> entries;
+        private final long timestamp;
 
-        DirectoryIterator(@Nonnull File directory, long timestamp) {
-            ImmutableList.Builder<ClassPathResource> builder = ImmutableList.builder();
-            findClassFiles(builder, timestamp, directory);
-            this.entries = builder.build().iterator();
-        }
+        private ImmutableList<File> files;
 
-        @Override
-        public boolean hasNext() {
-            return entries.hasNext();
+        private DirectoryElement(@Nonnull File directory, @Nullable String prefix, String groupId, String artifactId, boolean hideClasses, long timestamp,
+                ClassPathTag... tags) {
+            super(directory, prefix, groupId, artifactId, hideClasses, tags);
+            this.timestamp = timestamp;
         }
 
         @Override
-        public ClassPathResource next() {
-            return entries.next();
-        }
+        public Iterator<ClassPathResource> iterator() {
+            if (files == null) {
+                ImmutableList.Builder<File> builder = ImmutableList.builder();
+                findFiles(builder, super.archiveFile);
+                this.files = builder.build();
+            }
 
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
+            return Iterators.transform(files.iterator(), file -> ClassPathResource.fromFile(this, file, timestamp, super.tagMask));
         }
 
+        private static void findFiles(@Nonnull ImmutableList.Builder<File> out, @Nonnull File dir) {
+            final File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isDirectory()) {
+                        findFiles(out, file);
+                    } else if (file.isFile()) {
+                        out.add(file);
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -17,6 +17,9 @@ package org.basepom.inline.transformer;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.basepom.inline.transformer.util.ExceptionUtil.wrapIOException;
 
+import org.basepom.inline.transformer.util.ExceptionUtil;
+import org.basepom.inline.transformer.zip.MappedZipEntry;
+
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.InputStream;
@@ -40,78 +43,99 @@ public final class ClassPathResource {
 
     private static final String CLASS_SUFFIX = ".class";
 
+    private static final int DIRECTORY_TAGS = ClassPathTag.mask(ClassPathTag.DIRECTORY, ClassPathTag.RESOURCE);
+    private static final int CONTENT_TAGS = ClassPathTag.mask(ClassPathTag.FILE, ClassPathTag.RESOURCE);
+
     private final String prefix;
     private final String name;
     private final long lastModifiedTime;
     private final ClassPathElement classPathElement;
 
-    private final Supplier<InputStream> inputStreamSupplier;
-    private final ImmutableSet<ClassPathTag> tags;
+    private final Supplier<byte[]> contentSupplier;
+    private final MappedZipEntry sourceEntry;
+    private final int tags;
 
     private transient byte[] content;
 
     public static ClassPathResource fromZipEntry(ClassPathElement classPathElement, ZipFile zipFile, ZipEntry entry, ImmutableSet<ClassPathTag> tags) {
+        return fromZipEntry(classPathElement, zipFile, entry, ClassPathTag.mask(tags));
+    }
 
-        ImmutableSet.Builder<ClassPathTag> builder = ImmutableSet.builder();
-        builder.addAll(tags);
-        builder.add(entry.isDirectory() ? ClassPathTag.DIRECTORY : ClassPathTag.FILE);
-        builder.add(entry.getName().endsWith(CLASS_SUFFIX) ? ClassPathTag.CLASS : ClassPathTag.RESOURCE);
+    static ClassPathResource fromZipEntry(ClassPathElement classPathElement, ZipFile zipFile, ZipEntry entry, int tagMask) {
+        return new ClassPathResource(null, entry.getName(), entry.getTime(), classPathElement, supplierForZipEntry(zipFile, entry), null, null,
+                tagMask | entryTags(entry.isDirectory(), entry.getName()));
+    }
 
-        return new ClassPathResource(null, entry.getName(), entry.getTime(), classPathElement, supplierForZipEntry(zipFile, entry), null, builder.build());
+    public static ClassPathResource fromMappedZipEntry(ClassPathElement classPathElement, MappedZipEntry entry, ImmutableSet<ClassPathTag> tags) {
+        return fromMappedZipEntry(classPathElement, entry, ClassPathTag.mask(tags));
+    }
+
+    static ClassPathResource fromMappedZipEntry(ClassPathElement classPathElement, MappedZipEntry entry, int tagMask) {
+        return new ClassPathResource(null, entry.getName(), entry.getTime(), classPathElement, () -> wrapIOException(entry::getContent), null, entry,
+                tagMask | entryTags(entry.isDirectory(), entry.getName()));
     }
 
     public static ClassPathResource fromFile(ClassPathElement classPathElement, File file, long timestamp, ImmutableSet<ClassPathTag> tags) {
-        ImmutableSet.Builder<ClassPathTag> builder = ImmutableSet.builder();
-        builder.addAll(tags);
-        builder.add(file.isDirectory() ? ClassPathTag.DIRECTORY : ClassPathTag.FILE);
-        builder.add(file.getName().endsWith(CLASS_SUFFIX) ? ClassPathTag.CLASS : ClassPathTag.RESOURCE);
+        return fromFile(classPathElement, file, timestamp, ClassPathTag.mask(tags));
+    }
 
-        return new ClassPathResource(null, file.getName(), timestamp, classPathElement, supplierForFile(file), null, builder.build());
+    static ClassPathResource fromFile(ClassPathElement classPathElement, File file, long timestamp, int tagMask) {
+        return new ClassPathResource(null, file.getName(), timestamp, classPathElement, supplierForFile(file), null, null,
+                tagMask | entryTags(file.isDirectory(), file.getName()));
     }
 
     public static ClassPathResource forDirectory(String directory, long timestamp) {
-        return new ClassPathResource(null, directory, timestamp, null, InputStream::nullInputStream, null,
-                ImmutableSet.of(ClassPathTag.DIRECTORY, ClassPathTag.RESOURCE));
+        return new ClassPathResource(null, directory, timestamp, null, ClassPathResource::emptyContent, null, null, DIRECTORY_TAGS);
     }
 
     public static ClassPathResource forContent(String name, long timestamp, byte[] content) {
-        return new ClassPathResource(null, name, timestamp, null, InputStream::nullInputStream, content,
-                ImmutableSet.of(ClassPathTag.FILE, ClassPathTag.RESOURCE));
+        return new ClassPathResource(null, name, timestamp, null, ClassPathResource::emptyContent, content, null, CONTENT_TAGS);
     }
 
     @VisibleForTesting
     public static ClassPathResource forTesting(String path, ClassPathElement classPathElement, ClassPathTag... tags) {
-        return new ClassPathResource(null, path, 0, classPathElement, InputStream::nullInputStream, null, ImmutableSet.copyOf(tags));
+        return new ClassPathResource(null, path, 0, classPathElement, ClassPathResource::emptyContent, null, null, ClassPathTag.mask(tags));
     }
 
     public ClassPathResource withPrefix(String prefix, String name) {
         if (Objects.equals(prefix, this.prefix) && name.equals(this.name)) {
             return this;
         }
-        return new ClassPathResource(prefix, name, this.lastModifiedTime, this.classPathElement, this.inputStreamSupplier, this.content, this.tags);
+        return new ClassPathResource(prefix, name, this.lastModifiedTime, this.classPathElement, this.contentSupplier, this.content, this.sourceEntry,
+                this.tags);
     }
 
     public ClassPathResource withName(String name) {
         if (name.equals(this.name)) {
             return this;
         }
-        return new ClassPathResource(this.prefix, name, this.lastModifiedTime, this.classPathElement, this.inputStreamSupplier, this.content, this.tags);
+        return new ClassPathResource(this.prefix, name, this.lastModifiedTime, this.classPathElement, this.contentSupplier, this.content, this.sourceEntry,
+                this.tags);
     }
 
     public ClassPathResource withContent(byte[] content) {
-        return new ClassPathResource(this.prefix, this.name, this.lastModifiedTime, this.classPathElement, this.inputStreamSupplier, content, this.tags);
+        return new ClassPathResource(this.prefix, this.name, this.lastModifiedTime, this.classPathElement, this.contentSupplier, content, null, this.tags);
+    }
+
+    /**
+     * Returns a resource whose content is provided by the given supplier when it is first requested. This allows content to be computed
+     * asynchronously while the resource already travels through the processor chain.
+     */
+    public ClassPathResource withContent(Supplier<byte[]> contentSupplier) {
+        return new ClassPathResource(this.prefix, this.name, this.lastModifiedTime, this.classPathElement, contentSupplier, null, null, this.tags);
     }
 
     private ClassPathResource(String prefix, String name, long lastModifiedTime,
-            @Nullable ClassPathElement classPathElement, Supplier<InputStream> inputStreamSupplier, byte[] content,
-            ImmutableSet<ClassPathTag> tags) {
+            @Nullable ClassPathElement classPathElement, Supplier<byte[]> contentSupplier, byte[] content, @Nullable MappedZipEntry sourceEntry,
+            int tags) {
         this.prefix = prefix;
         this.name = checkNotNull(name, "name is null");
         this.lastModifiedTime = lastModifiedTime;
         this.classPathElement = classPathElement;
-        this.inputStreamSupplier = checkNotNull(inputStreamSupplier, "inputStreamSupplier is null");
+        this.contentSupplier = checkNotNull(contentSupplier, "contentSupplier is null");
         this.content = content;
-        this.tags = checkNotNull(tags, "tags is null");
+        this.sourceEntry = sourceEntry;
+        this.tags = tags;
     }
 
     public Optional<ClassPathElement> getClassPathElement() {
@@ -124,7 +148,7 @@ public final class ClassPathResource {
 
     @Nonnull
     public String getName() {
-        if (containsTags(ClassPathTag.DIRECTORY)) {
+        if ((tags & ClassPathTag.DIRECTORY.mask()) != 0) {
             return name.endsWith("/") ? name : name + "/";
         }
         return name;
@@ -145,17 +169,37 @@ public final class ClassPathResource {
 
     @Nonnull
     public ImmutableSet<ClassPathTag> getTags() {
+        return ClassPathTag.fromMask(tags);
+    }
+
+    /**
+     * Returns the tags of this resource as a tag mask.
+     */
+    public int getTagMask() {
         return tags;
     }
 
+    public boolean containsTags(ClassPathTag tag) {
+        return (tags & tag.mask()) != 0;
+    }
+
     public boolean containsTags(ClassPathTag... tags) {
-        for (ClassPathTag tag : tags) {
-            if (!this.tags.contains(tag)) {
-                return false;
-            }
-        }
+        return containsTagMask(ClassPathTag.mask(tags));
+    }
 
-        return true;
+    /**
+     * Returns true if this resource has all the tags in the tag mask.
+     */
+    public boolean containsTagMask(int tagMask) {
+        return (tags & tagMask) == tagMask;
+    }
+
+    /**
+     * Returns the archive entry that this resource was read from, as long as its content has not been replaced. Renaming a resource does not modify
+     * its content, so the compressed entry data can be copied to the output unchanged.
+     */
+    public Optional<MappedZipEntry> getUnmodifiedEntry() {
+        return Optional.ofNullable(sourceEntry);
     }
 
     @Nonnull
@@ -164,11 +208,7 @@ public final class ClassPathResource {
     public byte[] getContent() {
 
         if (content == null) {
-            content = wrapIOException(() -> {
-                try (InputStream in = inputStreamSupplier.get()) {
-                    return ByteStreams.toByteArray(in);
-                }
-            });
+            content = contentSupplier.get();
         }
         return content;
     }
@@ -180,7 +220,7 @@ public final class ClassPathResource {
                 .add("name='" + name + "'")
                 .add("lastModifiedTime=" + lastModifiedTime)
                 .add("classPathElement='" + classPathElement + "'")
-                .add("tags=" + tags);
+                .add("tags=" + getTags());
         if (content == null) {
             joiner.add("content=<not loaded>");
         } else {
@@ -190,11 +230,28 @@ public final class ClassPathResource {
         return joiner.toString();
     }
 
-    private static Supplier<InputStream> supplierForZipEntry(ZipFile zipFile, ZipEntry zipEntry) {
-        return () -> wrapIOException(() -> zipFile.getInputStream(zipEntry));
+    private static int entryTags(boolean directory, String name) {
+        return (directory ? ClassPathTag.DIRECTORY.mask() : ClassPathTag.FILE.mask())
+                | (name.endsWith(CLASS_SUFFIX) ? ClassPathTag.CLASS.mask() : ClassPathTag.RESOURCE.mask());
+    }
+
+    private static byte[] emptyContent() {
+        return new byte[0];
+    }
+
+    private static byte[] readContent(ExceptionUtil.ThrowingSupplier<InputStream> inputStreamSupplier) {
+        return wrapIOException(() -> {
+            try (InputStream in = inputStreamSupplier.get()) {
+                return ByteStreams.toByteArray(in);
+            }
+        });
+    }
+
+    private static Supplier<byte[]> supplierForZipEntry(ZipFile zipFile, ZipEntry zipEntry) {
+        return () -> readContent(() -> zipFile.getInputStream(zipEntry));
     }
 
-    private static Supplier<InputStream> supplierForFile(File file) {
-        return () -> wrapIOException(() -> new BufferedInputStream(Files.newInputStream(file.toPath())));
+    private static Supplier<byte[]> supplierForFile(File file) {
+        return () -> readContent(() -> new BufferedInputStream(Files.newInputStream(file.toPath())));
     }
 }
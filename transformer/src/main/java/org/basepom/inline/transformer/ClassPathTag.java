@@ -14,11 +14,71 @@
 
 package org.basepom.inline.transformer;
 
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tags for class path elements and resources. A set of tags can be represented as a bit mask, see {@link #mask()}.
+ */
 public enum ClassPathTag {
     FILE,          // tags a file
     DIRECTORY,     // tags a directory
     CLASS,         // is a class
     RESOURCE,      // is a resource
 
-    ROOT_JAR       // one or more root jars, should not contain relocations, files in META-INF/ are retained
+    ROOT_JAR;      // one or more root jars, should not contain relocations, files in META-INF/ are retained
+
+    // one shared set for each possible tag mask.
+    private static final ImmutableSet<ClassPathTag>[] TAG_SETS = createTagSets();
+
+    /**
+     * Returns the bit that represents this tag in a tag mask.
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Returns the tag mask for the given tags.
+     */
+    public static int mask(Iterable<ClassPathTag> tags) {
+        int mask = 0;
+        for (ClassPathTag tag : tags) {
+            mask |= tag.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the tag mask for the given tags.
+     */
+    public static int mask(ClassPathTag... tags) {
+        int mask = 0;
+        for (ClassPathTag tag : tags) {
+            mask |= tag.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the set of tags for a tag mask. The set is shared, this method does not allocate.
+     */
+    public static ImmutableSet<ClassPathTag> fromMask(int mask) {
+        return TAG_SETS[mask];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ImmutableSet<ClassPathTag>[] createTagSets() {
+        ClassPathTag[] values = values();
+        ImmutableSet<ClassPathTag>[] tagSets = new ImmutableSet[1 << values.length];
+        for (int mask = 0; mask < tagSets.length; mask++) {
+            ImmutableSet.Builder<ClassPathTag> builder = ImmutableSet.builder();
+            for (ClassPathTag tag : values) {
+                if ((mask & tag.mask()) != 0) {
+                    builder.add(tag);
+                }
+            }
+            tagSets[mask] = builder.build();
+        }
+        return tagSets;
+    }
 }
@@ -16,8 +16,10 @@ package org.basepom.inline.transformer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import org.basepom.inline.transformer.util.PrefixTrie;
+
 import java.io.IOException;
-import java.util.Iterator;
+import java.lang.reflect.Method;
 import java.util.Optional;
 import java.util.Set;
 import javax.annotation.CheckForNull;
@@ -25,6 +27,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 public interface JarProcessor extends Comparable<JarProcessor> {
@@ -49,6 +52,21 @@ public interface JarProcessor extends Comparable<JarProcessor> {
 
     int getPriority();
 
+    /**
+     * Returns the phases in which this processor takes part. The processor is left out of the chain for all other phases. The default returns the phases
+     * for which the processor class overrides the phase method.
+     */
+    default ImmutableSet<Phase> getPhases() {
+        return Holder.findOverriddenPhases(getClass());
+    }
+
+    /**
+     * Returns the resources this processor wants to see in a phase. All other resources skip the processor. The default is all resources.
+     */
+    default ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.ALL;
+    }
+
     @Override
     default int compareTo(JarProcessor other) {
         return ComparisonChain.start()
@@ -57,66 +75,288 @@ public interface JarProcessor extends Comparable<JarProcessor> {
                 .result();
     }
 
+    /**
+     * The phases of the processor chain.
+     */
+    enum Phase {
+        PRE_SCAN("preScan"), SCAN("scan"), PROCESS("process");
+
+        private final String methodName;
+
+        Phase(String methodName) {
+            this.methodName = methodName;
+        }
+
+        @Override
+        public String toString() {
+            return methodName;
+        }
+    }
+
     interface Chain<T> {
 
         @CheckForNull
         T next(@Nullable T source) throws TransformerException, IOException;
     }
 
+    /**
+     * Runs resources through the processor chain. The chain for each phase is built once, so passing a resource through the chain does not allocate.
+     * Each resource is only passed to the processors that are interested in it.
+     * <p>
+     * A holder must only be used by one thread at a time.
+     */
     class Holder {
 
-        private final ImmutableSet<JarProcessor> processors;
+        // resources are routed with a bit mask per resource, so routing is only possible for up to 64 processors in a phase.
+        private static final int MAX_ROUTED_PROCESSORS = Long.SIZE;
+
+        private final Dispatcher preScanDispatcher;
+        private final Dispatcher scanDispatcher;
+        private final Dispatcher processDispatcher;
 
         public Holder(Set<JarProcessor> processors) {
-            this.processors = ImmutableSet.copyOf(checkNotNull(processors, "processors is null"));
+            this(processors, null);
         }
 
         public Holder(JarProcessor... processors) {
-            this.processors = ImmutableSet.copyOf(processors);
+            this(ImmutableSet.copyOf(processors), null);
+        }
+
+        /**
+         * Creates a new holder.
+         *
+         * @param processors The processor chain.
+         * @param timings    If not null, records self-time and invocation counts of all processors.
+         */
+        public Holder(Set<JarProcessor> processors, @Nullable ProcessorTimings timings) {
+            ImmutableList<JarProcessor> processorList = ImmutableSet.copyOf(checkNotNull(processors, "processors is null")).asList();
+            DownstreamTime downstreamTime = new DownstreamTime();
+
+            this.preScanDispatcher = createDispatcher(processorList, Phase.PRE_SCAN, timings, downstreamTime);
+            this.scanDispatcher = createDispatcher(processorList, Phase.SCAN, timings, downstreamTime);
+            this.processDispatcher = createDispatcher(processorList, Phase.PROCESS, timings, downstreamTime);
         }
 
-        @FunctionalInterface
-        interface ProcessorOperation<T> {
+        private static Dispatcher createDispatcher(ImmutableList<JarProcessor> processors, Phase phase, @Nullable ProcessorTimings timings,
+                DownstreamTime downstreamTime) {
+            // processors that do not take part in the phase would only pass the resource on, so they are left out.
+            JarProcessor[] phaseProcessors = processors.stream()
+                    .filter(processor -> processor.getPhases().contains(phase))
+                    .toArray(JarProcessor[]::new);
 
-            T apply(JarProcessor jarProcessor, T element, JarProcessor.Chain<T> chain) throws TransformerException, IOException;
+            return timings == null
+                    ? new Dispatcher(phase, phaseProcessors)
+                    : new TimedDispatcher(phase, phaseProcessors, timings, downstreamTime);
+        }
+
+        static ImmutableSet<Phase> findOverriddenPhases(Class<? extends JarProcessor> processorClass) {
+            ImmutableSet.Builder<Phase> builder = ImmutableSet.builder();
+            for (Phase phase : Phase.values()) {
+                try {
+                    Method method = processorClass.getMethod(phase.methodName, ClassPathResource.class, Chain.class);
+                    if (method.getDeclaringClass() != JarProcessor.class) {
+                        builder.add(phase);
+                    }
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return builder.build();
         }
 
-        @Nonnull
         public Optional<ClassPathResource> preScan(@Nonnull ClassPathResource classPathResource) throws TransformerException, IOException {
-            ChainInstance<ClassPathResource> instance = new ChainInstance<>(JarProcessor::preScan);
-            return Optional.ofNullable(instance.next(classPathResource));
+            return Optional.ofNullable(preScanDispatcher.dispatch(-1, classPathResource));
         }
 
-        @Nonnull
         public Optional<ClassPathResource> scan(@Nonnull ClassPathResource classPathResource) throws TransformerException, IOException {
-            ChainInstance<ClassPathResource> instance = new ChainInstance<>(JarProcessor::scan);
-            return Optional.ofNullable(instance.next(classPathResource));
+            return Optional.ofNullable(scanDispatcher.dispatch(-1, classPathResource));
         }
 
-        @Nonnull
         public Optional<ClassPathResource> process(@Nonnull ClassPathResource classPathResource) throws TransformerException, IOException {
-            ChainInstance<ClassPathResource> instance = new ChainInstance<>(JarProcessor::process);
-            return Optional.ofNullable(instance.next(classPathResource));
+            return Optional.ofNullable(processDispatcher.dispatch(-1, classPathResource));
+        }
+
+        /**
+         * Passes a resource down the processor chain of a phase. Same as the phase methods, but returns null instead of wrapping the result. The
+         * transformer calls this for every resource.
+         */
+        @CheckForNull
+        ClassPathResource dispatch(Phase phase, @Nonnull ClassPathResource classPathResource) throws TransformerException, IOException {
+            switch (phase) {
+                case PRE_SCAN:
+                    return preScanDispatcher.dispatch(-1, classPathResource);
+                case SCAN:
+                    return scanDispatcher.dispatch(-1, classPathResource);
+                case PROCESS:
+                    return processDispatcher.dispatch(-1, classPathResource);
+                default:
+                    throw new IllegalArgumentException("Unknown phase " + phase);
+            }
+        }
+
+        /**
+         * The processor chain for a phase. Each processor gets a link to the rest of the chain, which passes the resource to the next interested
+         * processor.
+         */
+        private static class Dispatcher {
+
+            private final Phase phase;
+            private final JarProcessor[] processors;
+            private final Link[] links;
+
+            private final boolean routed;
+            // processors that are interested in any path
+            private final long anyPathMask;
+            // processors that are interested in specific paths, indexed by path prefix
+            private final PrefixTrie pathPrefixes = new PrefixTrie();
+            // processors that are only interested in resources with specific tags
+            private final long taggedMask;
+            private final int[] tagMasks;
+
+            // interest mask of the resource that was routed last. Resources are immutable, so the mask stays valid until a processor
+            // passes on a different resource.
+            private ClassPathResource lastResource = null;
+            private long lastMask = 0;
+
+            Dispatcher(Phase phase, JarProcessor[] processors) {
+                this.phase = phase;
+                this.processors = processors;
+                this.links = new Link[processors.length];
+                this.tagMasks = new int[processors.length];
+                this.routed = processors.length <= MAX_ROUTED_PROCESSORS;
+
+                long anyPathMask = 0;
+                long taggedMask = 0;
+                for (int i = 0; i < processors.length; i++) {
+                    links[i] = new Link(this, i);
+
+                    ResourceInterest interest = routed ? processors[i].getInterest(phase) : ResourceInterest.ALL;
+                    long bit = 1L << i;
+                    if (interest.getPathPrefixes().isEmpty()) {
+                        anyPathMask |= bit;
+                    } else {
+                        for (String pathPrefix : interest.getPathPrefixes()) {
+                            pathPrefixes.add(pathPrefix, bit);
+                        }
+                    }
+                    tagMasks[i] = interest.getTagMask();
+                    if (tagMasks[i] != 0) {
+                        taggedMask |= bit;
+                    }
+                }
+                this.anyPathMask = anyPathMask;
+                this.taggedMask = taggedMask;
+            }
+
+            /**
+             * Passes the resource to the next interested processor after the given processor.
+             */
+            @CheckForNull
+            final ClassPathResource dispatch(int currentIndex, @Nullable ClassPathResource source) throws TransformerException, IOException {
+                if (source == null) {
+                    return null;
+                }
+
+                int nextIndex = currentIndex + 1;
+                if (routed && nextIndex < processors.length) {
+                    long mask = interestMask(source) & (-1L << nextIndex);
+                    nextIndex = mask == 0 ? processors.length : Long.numberOfTrailingZeros(mask);
+                }
+
+                return nextIndex < processors.length ? invoke(nextIndex, source) : source;
+            }
+
+            private long interestMask(ClassPathResource resource) {
+                if (resource != lastResource) {
+                    long mask = anyPathMask | pathPrefixes.match(resource.getName());
+                    for (long tagged = mask & taggedMask; tagged != 0; tagged &= tagged - 1) {
+                        int index = Long.numberOfTrailingZeros(tagged);
+                        if (!resource.containsTagMask(tagMasks[index])) {
+                            mask &= ~(1L << index);
+                        }
+                    }
+                    lastResource = resource;
+                    lastMask = mask;
+                }
+                return lastMask;
+            }
+
+            @CheckForNull
+            ClassPathResource invoke(int index, @Nonnull ClassPathResource source) throws TransformerException, IOException {
+                JarProcessor processor = processors[index];
+                switch (phase) {
+                    case PRE_SCAN:
+                        return processor.preScan(source, links[index]);
+                    case SCAN:
+                        return processor.scan(source, links[index]);
+                    case PROCESS:
+                        return processor.process(source, links[index]);
+                    default:
+                        throw new IllegalStateException("Unknown phase " + phase);
+                }
+            }
         }
 
-        final class ChainInstance<T> implements JarProcessor.Chain<T> {
+        /**
+         * Records the self-time of each processor. The time spent further down the chain is subtracted from the time of the processor.
+         */
+        private static final class TimedDispatcher extends Dispatcher {
 
-            private final Iterator<JarProcessor> iterator;
-            private final ProcessorOperation<T> operation;
+            private final ProcessorTimings.Counter[] counters;
+            private final DownstreamTime downstreamTime;
 
-            ChainInstance(ProcessorOperation<T> operation) {
-                this.operation = operation;
-                this.iterator = processors.iterator();
+            TimedDispatcher(Phase phase, JarProcessor[] processors, ProcessorTimings timings, DownstreamTime downstreamTime) {
+                super(phase, processors);
+                this.downstreamTime = downstreamTime;
+                this.counters = new ProcessorTimings.Counter[processors.length];
+                for (int i = 0; i < processors.length; i++) {
+                    counters[i] = timings.getCounter(processors[i], phase);
+                }
             }
 
             @Override
             @CheckForNull
-            public T next(@Nullable T source) throws TransformerException, IOException {
-                if (source != null && iterator.hasNext()) {
-                    return operation.apply(iterator.next(), source, this);
+            ClassPathResource invoke(int index, @Nonnull ClassPathResource source) throws TransformerException, IOException {
+                long outerDownstreamNanos = downstreamTime.nanos;
+                downstreamTime.nanos = 0;
+
+                long startTime = System.nanoTime();
+                try {
+                    return super.invoke(index, source);
+                } finally {
+                    long elapsedNanos = System.nanoTime() - startTime;
+                    counters[index].record(elapsedNanos - downstreamTime.nanos);
+                    downstreamTime.nanos = outerDownstreamNanos + elapsedNanos;
                 }
-                return source;
             }
         }
+
+        /**
+         * The rest of the chain after a processor.
+         */
+        private static final class Link implements Chain<ClassPathResource> {
+
+            private final Dispatcher dispatcher;
+            private final int index;
+
+            Link(Dispatcher dispatcher, int index) {
+                this.dispatcher = dispatcher;
+                this.index = index;
+            }
+
+            @Override
+            @CheckForNull
+            public ClassPathResource next(@Nullable ClassPathResource source) throws TransformerException, IOException {
+                return dispatcher.dispatch(index, source);
+            }
+        }
+
+        /**
+         * Time spent in the processors further down the chain of the current invocation.
+         */
+        private static final class DownstreamTime {
+
+            private long nanos = 0;
+        }
     }
 }
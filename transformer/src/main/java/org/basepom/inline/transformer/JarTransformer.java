@@ -15,10 +15,15 @@
 package org.basepom.inline.transformer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
+import org.basepom.inline.transformer.JarProcessor.Phase;
 import org.basepom.inline.transformer.asm.InlineRemapper;
+import org.basepom.inline.transformer.asm.InlineRemapper.StringRelocation;
 import org.basepom.inline.transformer.asm.RemappingClassTransformer;
+import org.basepom.inline.transformer.jfr.ArchiveEvent;
+import org.basepom.inline.transformer.jfr.TransformerPhaseEvent;
 import org.basepom.inline.transformer.processor.ClassTransformerJarProcessor;
 import org.basepom.inline.transformer.processor.DirectoryFilterProcessor;
 import org.basepom.inline.transformer.processor.DirectoryScanProcessor;
@@ -33,16 +38,20 @@ import org.basepom.inline.transformer.processor.ResourceRenamerJarProcessor;
 import org.basepom.inline.transformer.processor.ServiceLoaderCollectingProcessor;
 import org.basepom.inline.transformer.processor.ServiceLoaderRewritingProcessor;
 import org.basepom.inline.transformer.processor.SignatureFilterProcessor;
+import org.basepom.inline.transformer.util.WorkerPool;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import org.slf4j.Logger;
@@ -53,6 +62,13 @@ public final class JarTransformer {
     private static final Logger LOG = LoggerFactory.getLogger(JarTransformer.class);
 
     private final JarProcessor.Holder holder;
+    private final RemapperProcessor remapperProcessor;
+    private final int threads;
+    private final Executor sharedExecutor;
+
+    // only present while transform() runs with more than one thread or a shared executor.
+    private volatile Executor executor = null;
+    private boolean transformed = false;
 
     @VisibleForTesting
     JarTransformer(@Nonnull Consumer<ClassPathResource> outputSink) {
@@ -61,10 +77,31 @@ public final class JarTransformer {
 
     public JarTransformer(@Nonnull Consumer<ClassPathResource> outputSink, long timestamp,
             boolean failOnDuplicates, ImmutableSet<String> additionalProcessors) {
+        this(outputSink, timestamp, failOnDuplicates, additionalProcessors, TransformerOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a new transformer.
+     *
+     * @param outputSink           Receives all resources for the new jar. The order in which resources are passed to the sink does not depend on the number
+     *                             of threads.
+     * @param timestamp            Timestamp for all generated resources.
+     * @param failOnDuplicates     If true, fail if any duplicate resource is found.
+     * @param additionalProcessors Class names of additional processors to add to the processor chain.
+     * @param options              Threads, class cache and other optional settings.
+     */
+    public JarTransformer(@Nonnull Consumer<ClassPathResource> outputSink, long timestamp,
+            boolean failOnDuplicates, ImmutableSet<String> additionalProcessors, TransformerOptions options) {
         checkNotNull(outputSink, "outputFile is null");
+        checkNotNull(options, "options is null");
+
+        this.threads = options.getThreads();
+        this.sharedExecutor = options.getExecutor().orElse(null);
+        StringRelocation stringRelocation = options.getStringRelocation();
 
         RemapperProcessor packageRemapperProcessor = new RemapperProcessor();
-        InlineRemapper remapper = new InlineRemapper(packageRemapperProcessor);
+        this.remapperProcessor = packageRemapperProcessor;
+        InlineRemapper remapper = new InlineRemapper(packageRemapperProcessor, stringRelocation);
 
         ProcessorContext processorContext = new ProcessorContext(remapper, outputSink, timestamp);
 
@@ -97,7 +134,11 @@ public final class JarTransformer {
         builder.add(packageRemapperProcessor);
 
         // rename classes and resources.
-        builder.add(new ClassTransformerJarProcessor(new RemappingClassTransformer(remapper)));
+        ClassCache classCache = options.getCacheDirectory()
+                .map(cacheDirectory -> new ClassCache(cacheDirectory, () -> stringRelocation + ":" + packageRemapperProcessor.getRulesFingerprint()))
+                .orElse(null);
+        Executor classExecutor = threads > 1 || sharedExecutor != null ? this::execute : null;
+        builder.add(new ClassTransformerJarProcessor(classExecutor, classCache, ImmutableList.of(new RemappingClassTransformer(remapper))));
         builder.add(new ResourceRenamerJarProcessor(packageRemapperProcessor));
 
         // create new directory structure for the jar
@@ -108,7 +149,7 @@ public final class JarTransformer {
         // must come last, removes all duplicates
         builder.add(new DuplicateDiscardProcessor(failOnDuplicates));
 
-        this.holder = new JarProcessor.Holder(builder.build());
+        this.holder = new JarProcessor.Holder(builder.build(), options.getTimings().orElse(null));
     }
 
     private void createAdditionalProcessors(ImmutableSortedSet.Builder<JarProcessor> builder, ProcessorContext processorContext,
@@ -137,32 +178,94 @@ public final class JarTransformer {
         }
     }
 
+    /**
+     * Transforms all resources of the class path. A transformer can only be used once.
+     * <p>
+     * With more than one thread, the content of rewritten classes may still be computed after this method returns. The worker threads of a pool
+     * owned by the transformer finish all submitted work and then terminate. A shared executor (see {@link TransformerOptions#withExecutor}) is not
+     * shut down.
+     */
     public void transform(@Nonnull ClassPath inputPath) throws TransformerException, IOException {
+        checkState(!transformed, "transformer has already been used");
+        transformed = true;
 
-        for (ClassPathElement inputArchive : inputPath) {
-            LOG.debug(format("Pre-scanning archive %s", inputArchive));
-            for (ClassPathResource inputResource : inputArchive) {
-                holder.preScan(inputResource);
+        ExecutorService executorService = sharedExecutor == null && threads > 1 ? WorkerPool.create(threads) : null;
+        executor = sharedExecutor != null ? sharedExecutor : executorService;
+
+        boolean success = false;
+        try {
+            // The first pass lists the entries of each archive. The scan and process passes reuse this
+            // listing and do not reopen or re-enumerate the archives. The name-only processors of the scan
+            // pass (resource renaming, directory scan) can not run in the pre-scan pass: they work on the
+            // relocated names, and those are only known once the pre-scan pass has seen all archives.
+            runPhase(inputPath, Phase.PRE_SCAN, "Pre-scanning", resource -> holder.dispatch(Phase.PRE_SCAN, resource));
+            // all classes and packages are known, compute their new names once.
+            remapperProcessor.freeze();
+
+            runPhase(inputPath, Phase.SCAN, "Scanning", resource -> holder.dispatch(Phase.SCAN, resource));
+
+            // write out directories for the new jar
+            runPhase(inputPath, Phase.PROCESS, "Transforming", resource -> holder.dispatch(Phase.PROCESS, resource));
+            success = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            executor = null;
+            if (executorService != null) {
+                if (success) {
+                    // already submitted work still completes, resources handed to the output sink can still be resolved.
+                    executorService.shutdown();
+                } else {
+                    executorService.shutdownNow();
+                }
             }
         }
+    }
 
+    private void execute(Runnable command) {
+        Executor currentExecutor = executor;
+        checkState(currentExecutor != null, "transformer is not running");
+        currentExecutor.execute(command);
+    }
+
+    @FunctionalInterface
+    private interface PhaseOperation {
+
+        void apply(ClassPathResource classPathResource) throws TransformerException, IOException;
+    }
+
+    private static void runPhase(ClassPath inputPath, Phase phase, String action, PhaseOperation operation) throws TransformerException, IOException {
+        TransformerPhaseEvent phaseEvent = new TransformerPhaseEvent();
+        phaseEvent.begin();
+
+        int archives = 0;
+        long entries = 0;
         for (ClassPathElement inputArchive : inputPath) {
-            LOG.debug(format("Scanning archive %s", inputArchive));
+            LOG.debug(format("%s archive %s", action, inputArchive));
+
+            ArchiveEvent archiveEvent = new ArchiveEvent();
+            archiveEvent.begin();
+
+            int archiveEntries = 0;
             for (ClassPathResource inputResource : inputArchive) {
-                holder.scan(inputResource);
+                operation.apply(inputResource);
+                archiveEntries++;
             }
-        }
 
-        try {
-            // write out directories for the new jar
-            for (ClassPathElement inputArchive : inputPath) {
-                LOG.debug(format("Transforming archive %s", inputArchive));
-                for (ClassPathResource inputResource : inputArchive) {
-                    holder.process(inputResource);
-                }
+            archiveEvent.end();
+            if (archiveEvent.shouldCommit()) {
+                archiveEvent.set(phase.toString(), inputArchive.getArchiveName(), archiveEntries);
+                archiveEvent.commit();
             }
-        } catch (UncheckedIOException e) {
-            throw e.getCause();
+
+            archives++;
+            entries += archiveEntries;
+        }
+
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.set(phase.toString(), archives, entries);
+            phaseEvent.commit();
         }
     }
 }
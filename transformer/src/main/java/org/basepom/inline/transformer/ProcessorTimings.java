@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.JarProcessor.Phase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+
+/**
+ * Collects self-time and invocation counts for each processor and phase. The self-time of a processor excludes the time spent in the processors further
+ * down the chain.
+ * <p>
+ * Work that a processor hands off to other threads (e.g. class rewriting with multiple threads) is not included.
+ */
+public final class ProcessorTimings {
+
+    // guarded by this. Counters belong to a processor instance, processors with the same class name are counted separately.
+    private final List<Counter> counters = new ArrayList<>();
+
+    /**
+     * Returns the counter for a processor and phase.
+     */
+    synchronized Counter getCounter(JarProcessor jarProcessor, Phase phase) {
+        checkNotNull(jarProcessor, "jarProcessor is null");
+        checkNotNull(phase, "phase is null");
+
+        for (Counter counter : counters) {
+            if (counter.getProcessor() == jarProcessor && counter.getPhase() == phase) {
+                return counter;
+            }
+        }
+        Counter counter = new Counter(jarProcessor, phase);
+        counters.add(counter);
+        return counter;
+    }
+
+    private synchronized List<Counter> getCounters() {
+        return ImmutableList.copyOf(counters);
+    }
+
+    /**
+     * Returns the total self-time of all processors in all phases.
+     */
+    public long getTotalNanos() {
+        return getCounters().stream().mapToLong(Counter::getNanos).sum();
+    }
+
+    /**
+     * Returns a table with the self-time and the invocation count for each processor and phase, ordered by decreasing self-time.
+     */
+    public List<String> getSummary() {
+        List<Counter> sortedCounters = new ArrayList<>(getCounters());
+        Map<JarProcessor, String> processorNames = getProcessorNames(sortedCounters);
+        sortedCounters.sort(Comparator.comparingLong(Counter::getNanos).reversed()
+                .thenComparing(counter -> processorNames.get(counter.getProcessor()))
+                .thenComparing(Counter::getPhase));
+
+        long totalNanos = sortedCounters.stream().mapToLong(Counter::getNanos).sum();
+        String rowFormat = "%-40s %-8s %12s %12s %6s";
+
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        builder.add(format(rowFormat, "Processor", "Phase", "Calls", "Self (ms)", "%"));
+        for (Counter counter : sortedCounters) {
+            builder.add(format(rowFormat, processorNames.get(counter.getProcessor()), counter.getPhase(),
+                    format("%,d", counter.getInvocations()),
+                    format("%,d", TimeUnit.NANOSECONDS.toMillis(counter.getNanos())),
+                    format("%.1f", totalNanos == 0 ? 0.0 : counter.getNanos() * 100.0 / totalNanos)));
+        }
+        builder.add(format(rowFormat, "Total", "", "", format("%,d", TimeUnit.NANOSECONDS.toMillis(totalNanos)), ""));
+        return builder.build();
+    }
+
+    // simple class names, fully qualified if two processor classes share a simple name, numbered if a class has more than one instance.
+    private static Map<JarProcessor, String> getProcessorNames(List<Counter> counters) {
+        // each processor instance once, in the order in which the counters were created.
+        List<JarProcessor> processors = new ArrayList<>();
+        for (Counter counter : counters) {
+            if (processors.stream().noneMatch(processor -> processor == counter.getProcessor())) {
+                processors.add(counter.getProcessor());
+            }
+        }
+
+        Multiset<Class<?>> instances = HashMultiset.create();
+        Multiset<String> simpleNames = HashMultiset.create();
+        for (JarProcessor processor : processors) {
+            if (!instances.contains(processor.getClass())) {
+                simpleNames.add(processor.getClass().getSimpleName());
+            }
+            instances.add(processor.getClass());
+        }
+
+        Map<JarProcessor, String> processorNames = new IdentityHashMap<>();
+        Multiset<Class<?>> numbered = HashMultiset.create();
+        for (JarProcessor processor : processors) {
+            Class<?> processorClass = processor.getClass();
+            String name = simpleNames.count(processorClass.getSimpleName()) > 1 ? processorClass.getName() : processorClass.getSimpleName();
+            if (instances.count(processorClass) > 1) {
+                numbered.add(processorClass);
+                name = name + " #" + numbered.count(processorClass);
+            }
+            processorNames.put(processor, name);
+        }
+        return processorNames;
+    }
+
+    /**
+     * Self-time and invocation count of a processor in a phase.
+     */
+    static final class Counter {
+
+        private final JarProcessor processor;
+        private final Phase phase;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Counter(JarProcessor processor, Phase phase) {
+            this.processor = processor;
+            this.phase = phase;
+        }
+
+        void record(long selfNanos) {
+            invocations.increment();
+            nanos.add(selfNanos);
+        }
+
+        JarProcessor getProcessor() {
+            return processor;
+        }
+
+        Phase getPhase() {
+            return phase;
+        }
+
+        long getInvocations() {
+            return invocations.sum();
+        }
+
+        long getNanos() {
+            return nanos.sum();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.StringJoiner;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
@@ -33,10 +34,22 @@ public final class Rename implements Comparable<Rename> {
     private final List<String> destinationElements;
     private final boolean hideClasses;
 
+    // source and destination joined with '/' and with '.' (null if an element contains a '.'). Names without whitespace are matched against these
+    // directly, without splitting them into elements.
+    private final String sourcePath;
+    private final String destinationPath;
+    private final String sourceClassName;
+    private final String destinationClassName;
+
     private Rename(String source, String destination, boolean hideClasses) {
         this.sourceElements = ClassNameUtils.pathToElements(source);
         this.destinationElements = ClassNameUtils.pathToElements(destination);
         this.hideClasses = hideClasses;
+
+        this.sourcePath = ClassNameUtils.elementsToPath(sourceElements);
+        this.destinationPath = ClassNameUtils.elementsToPath(destinationElements);
+        this.sourceClassName = sourcePath.indexOf('.') < 0 ? ClassNameUtils.toPackage(sourcePath) : null;
+        this.destinationClassName = ClassNameUtils.toPackage(destinationPath);
     }
 
     public static Rename forClassName(String source, String destination, boolean hideClasses) {
@@ -50,8 +63,20 @@ public final class Rename implements Comparable<Rename> {
         return new Rename(source, destination, false);
     }
 
+    /**
+     * Returns the source of this rename as a path, with elements separated by '/'.
+     */
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
     @CheckForNull
     public String renamePath(@Nonnull String path) {
+        if (!CharMatcher.whitespace().matchesAnyOf(path)) {
+            int index = matchPrefix(path, sourcePath, '/');
+            return index < 0 ? null : destinationPath + path.substring(index);
+        }
+
         List<String> pathElements = ClassNameUtils.pathToElements(path);
         int index = matchPrefix(pathElements, sourceElements);
         if (index < 0) {
@@ -70,6 +95,14 @@ public final class Rename implements Comparable<Rename> {
 
         boolean needPathConversion = className.indexOf('/') < 0;
 
+        if (!CharMatcher.whitespace().matchesAnyOf(className)) {
+            if (!needPathConversion) {
+                return renameClassName(className, sourcePath, destinationPath, '/', hideClasses);
+            } else if (sourceClassName != null) {
+                return renameClassName(className, sourceClassName, destinationClassName, '.', hideClasses);
+            }
+        }
+
         List<String> pathElements =
                 needPathConversion ? ClassNameUtils.pathToElements(ClassNameUtils.toPath(className)) : ClassNameUtils.pathToElements(className);
 
@@ -91,6 +124,27 @@ public final class Rename implements Comparable<Rename> {
         return needPathConversion ? ClassNameUtils.toPackage(result) : result;
     }
 
+    @CheckForNull
+    private String renameClassName(String className, String source, String destination, char separator, boolean hideClasses) {
+        int index = matchPrefix(className, source, separator);
+        // no match or full length match (not a prefix)
+        if (index < 0 || index == className.length()) {
+            return null;
+        }
+
+        int nameIndex = className.lastIndexOf(separator) + 1;
+        return destination + className.substring(index, nameIndex) + (this.hideClasses && hideClasses ? "$" : "") + className.substring(nameIndex);
+    }
+
+    // returns the end of the matching prefix or -1 if the prefix does not match whole elements of the name.
+    private static int matchPrefix(String name, String prefix, char separator) {
+        if (!name.startsWith(prefix)) {
+            return -1;
+        }
+        int index = prefix.length();
+        return index == name.length() || name.charAt(index) == separator ? index : -1;
+    }
+
     private int matchPrefix(List<String> pathElements, List<String> elements) {
         if (elements.size() > pathElements.size()) {
             // source is longer than the whole path...
@@ -137,7 +191,7 @@ public final class Rename implements Comparable<Rename> {
     public int compareTo(Rename other) {
         return ComparisonChain.start()
                 .compare(this.sourceElements.size(), other.sourceElements.size())
-                .compare(ClassNameUtils.elementsToPath(this.sourceElements), ClassNameUtils.elementsToPath(other.sourceElements))
+                .compare(this.sourcePath, other.sourcePath)
                 .result();
     }
 }
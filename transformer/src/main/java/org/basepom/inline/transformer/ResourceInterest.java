@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.StringJoiner;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Describes the resources a processor wants to see in a phase. The processor chain only passes a resource to a processor if its name starts with one of
+ * the path prefixes (or no prefixes are given) and it has all the tags.
+ * <p>
+ * This is a routing hint. A processor must still handle (usually by passing on) any resource it receives.
+ */
+public final class ResourceInterest {
+
+    /**
+     * Interested in all resources.
+     */
+    public static final ResourceInterest ALL = new ResourceInterest(ImmutableSet.of(), ImmutableSet.of());
+
+    private final ImmutableSet<ClassPathTag> tags;
+    private final int tagMask;
+    private final ImmutableSet<String> pathPrefixes;
+
+    private ResourceInterest(ImmutableSet<ClassPathTag> tags, ImmutableSet<String> pathPrefixes) {
+        this.tags = tags;
+        this.tagMask = ClassPathTag.mask(tags);
+        this.pathPrefixes = pathPrefixes;
+    }
+
+    /**
+     * Interested in all resources that have all the given tags.
+     */
+    public static ResourceInterest tagged(ClassPathTag... tags) {
+        return new ResourceInterest(ImmutableSet.copyOf(tags), ImmutableSet.of());
+    }
+
+    /**
+     * Interested in all resources whose name starts with any of the given prefixes.
+     */
+    public static ResourceInterest pathPrefixes(String... pathPrefixes) {
+        return ALL.withPathPrefixes(pathPrefixes);
+    }
+
+    /**
+     * Restricts this interest to resources whose name starts with any of the given prefixes.
+     */
+    public ResourceInterest withPathPrefixes(String... pathPrefixes) {
+        for (String pathPrefix : pathPrefixes) {
+            checkNotNull(pathPrefix, "pathPrefix is null");
+        }
+        return new ResourceInterest(tags, ImmutableSet.<String>builder().addAll(this.pathPrefixes).add(pathPrefixes).build());
+    }
+
+    public ImmutableSet<ClassPathTag> getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns the tags as a tag mask.
+     */
+    public int getTagMask() {
+        return tagMask;
+    }
+
+    public ImmutableSet<String> getPathPrefixes() {
+        return pathPrefixes;
+    }
+
+    public boolean isAll() {
+        return tags.isEmpty() && pathPrefixes.isEmpty();
+    }
+
+    /**
+     * Returns true if the resource is of interest.
+     */
+    public boolean matches(ClassPathResource classPathResource) {
+        if (!classPathResource.containsTagMask(tagMask)) {
+            return false;
+        }
+        if (pathPrefixes.isEmpty()) {
+            return true;
+        }
+        String name = classPathResource.getName();
+        for (String pathPrefix : pathPrefixes) {
+            if (name.startsWith(pathPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ResourceInterest.class.getSimpleName() + "[", "]")
+                .add("tags=" + tags)
+                .add("pathPrefixes=" + pathPrefixes)
+                .toString();
+    }
+}
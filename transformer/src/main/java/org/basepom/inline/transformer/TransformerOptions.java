@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.basepom.inline.transformer.asm.InlineRemapper.StringRelocation;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+
+/**
+ * Optional settings for a {@link JarTransformer}. Instances are immutable, each {@code with} method returns a new instance.
+ */
+public final class TransformerOptions {
+
+    public static final TransformerOptions DEFAULT = new TransformerOptions(1, null, null, null, StringRelocation.HEURISTIC);
+
+    private final int threads;
+    private final Executor executor;
+    private final Path cacheDirectory;
+    private final ProcessorTimings timings;
+    private final StringRelocation stringRelocation;
+
+    private TransformerOptions(int threads, @Nullable Executor executor, @Nullable Path cacheDirectory, @Nullable ProcessorTimings timings, StringRelocation stringRelocation) {
+        this.threads = threads;
+        this.executor = executor;
+        this.cacheDirectory = cacheDirectory;
+        this.timings = timings;
+        this.stringRelocation = checkNotNull(stringRelocation, "stringRelocation is null");
+    }
+
+    /**
+     * Number of threads used to rewrite classes. If less than two, all classes are rewritten on the calling thread.
+     */
+    public TransformerOptions withThreads(int threads) {
+        return new TransformerOptions(threads, executor, cacheDirectory, timings, stringRelocation);
+    }
+
+    /**
+     * Executor used to rewrite classes instead of a pool owned by the transformer, e.g. a {@link org.basepom.inline.transformer.util.WorkerPool} that is
+     * shared with a {@link org.basepom.inline.transformer.zip.ZipEntrySpool}. The transformer does not shut it down. If null, the transformer creates its
+     * own pool if more than one thread is used.
+     */
+    public TransformerOptions withExecutor(@Nullable Executor executor) {
+        return new TransformerOptions(threads, executor, cacheDirectory, timings, stringRelocation);
+    }
+
+    /**
+     * Directory for the persistent cache of rewritten classes. If null, no cache is used.
+     */
+    public TransformerOptions withCacheDirectory(@Nullable Path cacheDirectory) {
+        return new TransformerOptions(threads, executor, cacheDirectory, timings, stringRelocation);
+    }
+
+    /**
+     * If not null, records self-time and invocation counts of all processors.
+     */
+    public TransformerOptions withTimings(@Nullable ProcessorTimings timings) {
+        return new TransformerOptions(threads, executor, cacheDirectory, timings, stringRelocation);
+    }
+
+    /**
+     * Controls which string constants in classes are rewritten.
+     */
+    public TransformerOptions withStringRelocation(StringRelocation stringRelocation) {
+        return new TransformerOptions(threads, executor, cacheDirectory, timings, stringRelocation);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public Optional<Executor> getExecutor() {
+        return Optional.ofNullable(executor);
+    }
+
+    public Optional<Path> getCacheDirectory() {
+        return Optional.ofNullable(cacheDirectory);
+    }
+
+    public Optional<ProcessorTimings> getTimings() {
+        return Optional.ofNullable(timings);
+    }
+
+    public StringRelocation getStringRelocation() {
+        return stringRelocation;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", TransformerOptions.class.getSimpleName() + "[", "]")
+                .add("threads=" + threads)
+                .add("executor=" + executor)
+                .add("cacheDirectory=" + cacheDirectory)
+                .add("timings=" + timings)
+                .add("stringRelocation=" + stringRelocation)
+                .toString();
+    }
+}
@@ -16,6 +16,7 @@ package org.basepom.inline.transformer.asm;
 
 import javax.annotation.Nonnull;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 
 /**
@@ -25,4 +26,11 @@ public interface ClassTransformer {
 
     @Nonnull
     ClassVisitor transform(@Nonnull ClassVisitor classVisitor);
+
+    /**
+     * Returns true if this transformer may change the class. Classes that no transformer changes are copied to the output without rewriting.
+     */
+    default boolean mayTransform(@Nonnull ClassReader classReader) {
+        return true;
+    }
 }
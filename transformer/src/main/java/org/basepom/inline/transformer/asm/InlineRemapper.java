@@ -14,40 +14,71 @@
 
 package org.basepom.inline.transformer.asm;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 
 import org.basepom.inline.transformer.ClassNameUtils;
-import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.Rename;
 import org.basepom.inline.transformer.processor.RemapperProcessor;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSortedSet;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.commons.Remapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Remaps class names, resource names and string constants. Can be shared by any number of threads: class and resource names are looked up in the table
+ * that the remapper processor computes at the end of the pre-scan phase, and string constants are rewritten using only this table, so the result does
+ * not depend on which thread rewrites a value first.
+ */
 public final class InlineRemapper extends Remapper {
 
+    /**
+     * Controls which string constants are rewritten.
+     */
+    public enum StringRelocation {
+        /** Do not rewrite string constants. */
+        OFF,
+        /** Rewrite string constants that are the name of a relocated class or resource. */
+        EXACT,
+        /** Rewrite string constants that look like a class name and start with a relocated class or package name. */
+        HEURISTIC
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(InlineRemapper.class);
 
-    private final Map<String, String> typeCache = new HashMap<>();
+    // tag of a CONSTANT_Utf8_info entry in the constant pool.
+    private static final int CONSTANT_UTF8_TAG = 1;
+
+    // number of rewritten string constants that are remembered.
+    private static final int VALUE_CACHE_SIZE = 16384;
+
+    // string constants repeat mostly within a class or library. The cache belongs to the remapper, so it is released with the transformer that uses
+    // it and never stays behind in the threads that rewrote the classes.
+    private final Cache<String, String> valueCache = CacheBuilder.newBuilder().maximumSize(VALUE_CACHE_SIZE).build();
 
     private final RemapperProcessor remapperProcessor;
+    private final StringRelocation stringRelocation;
 
-    @SuppressFBWarnings("EI_EXPOSE_REP2")
     public InlineRemapper(RemapperProcessor remapperProcessor) {
+        this(remapperProcessor, StringRelocation.HEURISTIC);
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public InlineRemapper(RemapperProcessor remapperProcessor, StringRelocation stringRelocation) {
         this.remapperProcessor = remapperProcessor;
+        this.stringRelocation = checkNotNull(stringRelocation, "stringRelocation is null");
     }
 
     @Override
     public String map(String key) {
-        return typeCache.computeIfAbsent(key, k -> computeNewName(key));
+        // the new names of all classes and resources are computed once, at the end of the pre-scan phase.
+        return remapperProcessor.mapName(key);
     }
 
     @Override
@@ -56,45 +87,95 @@ public final class InlineRemapper extends Remapper {
             return super.mapValue(value);
         }
         String key = (String) value;
-        String cacheResult = typeCache.get(key);
+        if (stringRelocation == StringRelocation.OFF) {
+            return key;
+        }
+        // most string constants are not class names at all.
+        if (!ClassNameUtils.isObjectArray(key) && !remapperProcessor.isRelocationCandidate(key)) {
+            return key;
+        }
+
+        String cacheResult = valueCache.getIfPresent(key);
         if (cacheResult != null) {
             return cacheResult;
         }
 
+        String result = computeNewValue(key);
+        valueCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Returns true if relocation may change the class. Scans all strings in the constant pool of the class, these contain every class name, descriptor,
+     * signature and string constant used by the class. If none of them contains the name of a relocated package, the class is not changed.
+     */
+    public boolean mayRelocate(ClassReader classReader) {
+        char[] buffer = new char[classReader.getMaxStringLength()];
+        for (int i = 1; i < classReader.getItemCount(); i++) {
+            int offset = classReader.getItem(i);
+            // unused entries (the second slot of long and double constants) have offset 0.
+            if (offset > 0 && classReader.readByte(offset - 1) == CONSTANT_UTF8_TAG) {
+                int length = readUtf8(classReader, offset, buffer);
+                if (remapperProcessor.containsRelocatedName(buffer, 0, length)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // decodes the modified UTF-8 string at the offset into the buffer, returns the number of characters.
+    private static int readUtf8(ClassReader classReader, int offset, char[] buffer) {
+        int current = offset + 2;
+        int end = current + classReader.readUnsignedShort(offset);
+        int length = 0;
+        while (current < end) {
+            int b = classReader.readByte(current++);
+            if ((b & 0x80) == 0) {
+                buffer[length++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                buffer[length++] = (char) (((b & 0x1F) << 6) + (classReader.readByte(current++) & 0x3F));
+            } else {
+                buffer[length++] = (char) (((b & 0xF) << 12) + ((classReader.readByte(current++) & 0x3F) << 6) + (classReader.readByte(current++) & 0x3F));
+            }
+        }
+        return length;
+    }
+
+    private String computeNewValue(String key) {
         if (ClassNameUtils.isObjectArray(key)) {
             String arrayKey = mapDesc(key);
             if (!arrayKey.equals(key)) {
-                return storeValue(key, arrayKey);
+                return rewriteValue(key, arrayKey);
             }
         } else {
 
             boolean hasDots = key.indexOf('.') >= 0;
             boolean hasSlashes = key.indexOf('/') >= 0;
 
-            if (hasDots && !hasSlashes) {
+            if (stringRelocation == StringRelocation.EXACT) {
+                String newName = remapperProcessor.mapName(hasSlashes ? key : ClassNameUtils.toPath(key));
+                if (newName != null) {
+                    return rewriteValue(key, hasSlashes ? newName : ClassNameUtils.toPackage(newName));
+                }
+            } else if (hasDots && !hasSlashes) {
                 // may be a class name or a property setting like class.name.PropertyName
                 String classKey = ClassNameUtils.toPath(key);
                 if (ClassNameUtils.isClassNameHeuristic(key)) {
-                    String classValue = computeNewName(classKey);
+                    String classValue = remapperProcessor.mapName(classKey);
                     if (classValue != null) {
                         if (!classValue.equals(classKey)) {
-                            return storeValue(key, ClassNameUtils.toPackage(classValue));
+                            return rewriteValue(key, ClassNameUtils.toPackage(classValue));
                         }
 
-                        List<String> classElements = ClassNameUtils.pathToElements(classKey);
                         // shortening the name to find a renamable terminal (e.g. foo.bar.Class.MySetting will be renamed if foo.bar.Class is renamed)
-                        for (int i = classElements.size(); i > 0; i--) {
-                            List<String> testElements = classElements.subList(0, i);
-                            ImmutableSortedSet<Rename> renamers = remapperProcessor.renamersForElement(testElements, ClassPathTag.CLASS);
-
-                            if (renamers.isEmpty()) {
-                                renamers = remapperProcessor.packageNameRenamersForElement(testElements, ClassPathTag.CLASS);
-                            }
+                        for (String prefix = classKey; prefix != null; prefix = parentPath(prefix)) {
+                            ImmutableSortedSet<Rename> renamers = remapperProcessor.prefixRenamers(prefix);
 
                             if (!renamers.isEmpty()) {
                                 classValue = renamePath(classKey, renamers, false);
                                 if (classValue != null && !classValue.equals(classKey)) {
-                                    return storeValue(key, ClassNameUtils.toPackage(classValue));
+                                    return rewriteValue(key, ClassNameUtils.toPackage(classValue));
                                 }
                             }
                         }
@@ -104,44 +185,27 @@ public final class InlineRemapper extends Remapper {
             } else if (hasSlashes) {
                 // compute value directly (with slashes)
                 if (ClassNameUtils.isClassNameHeuristic(ClassNameUtils.toPackage(key))) {
-                    String pathValue = computeNewName(key);
+                    String pathValue = remapperProcessor.mapName(key);
                     if (pathValue != null && !pathValue.equals(key)) {
-                        return storeValue(key, pathValue);
+                        return rewriteValue(key, pathValue);
                     }
                     LOG.debug(format("%s passed heuristics but not rewriting", key));
                 }
             }
         }
 
-        typeCache.put(key, key);
         return key;
     }
 
-    private String storeValue(String key, String value) {
-        typeCache.put(key, value);
+    private static String rewriteValue(String key, String value) {
         LOG.debug(format("Rewrote value '%s' to '%s'", key, value));
         return value;
     }
 
-    // computes a new name for a given class or resource. This can be a resource because
-    // it is called from mapValue which can contain any reference.
     @CheckForNull
-    private String computeNewName(String path) {
-        List<String> elements = ClassNameUtils.pathToElements(path);
-
-        // try classes first.
-        ImmutableSortedSet<Rename> classRenamers = remapperProcessor.renamersForElement(elements, ClassPathTag.CLASS);
-        if (!classRenamers.isEmpty()) {
-            return renamePath(path, classRenamers, true); // enable hide classes stuff
-        }
-
-        // try resource. Resource are never hidden
-        ImmutableSortedSet<Rename> resourceRenamers = remapperProcessor.renamersForElement(elements, ClassPathTag.RESOURCE);
-        if (!resourceRenamers.isEmpty()) {
-            return renamePath(path, resourceRenamers, false); // resources are never hidden
-        }
-
-        return null;
+    private static String parentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index < 0 ? null : path.substring(0, index);
     }
 
     // rename a path with a given set of renamers
@@ -16,8 +16,10 @@ package org.basepom.inline.transformer.asm;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.commons.ClassRemapper;
 import org.objectweb.asm.commons.Remapper;
@@ -25,9 +27,12 @@ import org.objectweb.asm.commons.Remapper;
 public class RemappingClassTransformer implements ClassTransformer {
 
     private final Remapper remapper;
+    private final Predicate<ClassReader> classFilter;
 
     public RemappingClassTransformer(Remapper remapper) {
         this.remapper = checkNotNull(remapper, "remapper is null");
+        // only the inline remapper knows which names it relocates, any other remapper may change every class.
+        this.classFilter = remapper instanceof InlineRemapper ? ((InlineRemapper) remapper)::mayRelocate : classReader -> true;
     }
 
     @Nonnull
@@ -36,4 +41,9 @@ public class RemappingClassTransformer implements ClassTransformer {
         return new ClassRemapper(classVisitor, remapper);
     }
 
+    @Override
+    public boolean mayTransform(@Nonnull ClassReader classReader) {
+        return classFilter.test(classReader);
+    }
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for each archive in each phase of the transformer.
+ */
+@Name("org.basepom.inline.Archive")
+@Label("Archive")
+@Description("Processing of all entries of an archive in a transformer phase")
+@Category({"Inline Maven Plugin", "Transformer"})
+@StackTrace(false)
+public final class ArchiveEvent extends Event {
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Archive Name")
+    private String archiveName;
+
+    @Label("Entries")
+    private int entries;
+
+    public void set(String phase, String archiveName, int entries) {
+        this.phase = phase;
+        this.archiveName = archiveName;
+        this.entries = entries;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for each class that is rewritten. Runs on the thread that rewrites the class, which may be a worker thread.
+ */
+@Name("org.basepom.inline.ClassRewrite")
+@Label("Class Rewrite")
+@Description("Rewriting of a single class")
+@Category({"Inline Maven Plugin", "Transformer"})
+@StackTrace(false)
+public final class ClassRewriteEvent extends Event {
+
+    @Label("Class Name")
+    private String className;
+
+    @Label("New Class Name")
+    private String newClassName;
+
+    @Label("Renamed")
+    private boolean renamed;
+
+    @Label("Input Size")
+    @DataAmount
+    private int inputSize;
+
+    @Label("Output Size")
+    @DataAmount
+    private int outputSize;
+
+    @Label("Cached")
+    @Description("The rewritten class was taken from the class cache")
+    private boolean cached;
+
+    public void set(String className, String newClassName, int inputSize, int outputSize, boolean cached) {
+        this.className = className;
+        this.newClassName = newClassName;
+        this.renamed = !className.equals(newClassName);
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.cached = cached;
+    }
+}
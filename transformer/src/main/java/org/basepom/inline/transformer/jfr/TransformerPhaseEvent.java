@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for each phase (preScan, scan, process) of the transformer.
+ */
+@Name("org.basepom.inline.TransformerPhase")
+@Label("Transformer Phase")
+@Description("A phase of the jar transformer")
+@Category({"Inline Maven Plugin", "Transformer"})
+@StackTrace(false)
+public final class TransformerPhaseEvent extends Event {
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Archives")
+    private int archives;
+
+    @Label("Entries")
+    private long entries;
+
+    public void set(String phase, int archives, long entries) {
+        this.phase = phase;
+        this.archives = archives;
+        this.entries = entries;
+    }
+}
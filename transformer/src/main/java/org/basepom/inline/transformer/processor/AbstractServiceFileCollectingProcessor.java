@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.ByteArrayInputStream;
@@ -56,6 +57,12 @@ public abstract class AbstractServiceFileCollectingProcessor implements JarProce
         return 110;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        // the process phase writes the collected files when it sees the first resource and discards all originals.
+        return phase == Phase.SCAN ? ResourceInterest.tagged(ClassPathTag.RESOURCE).withPathPrefixes(prefix) : ResourceInterest.ALL;
+    }
+
     @CheckForNull
     @Override
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
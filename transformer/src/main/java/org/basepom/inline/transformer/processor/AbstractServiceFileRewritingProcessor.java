@@ -22,6 +22,7 @@ import static org.basepom.inline.transformer.ClassNameUtils.toPath;
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 import org.basepom.inline.transformer.asm.InlineRemapper;
 
@@ -58,6 +59,11 @@ public abstract class AbstractServiceFileRewritingProcessor implements JarProces
         return 30;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.RESOURCE).withPathPrefixes(prefix);
+    }
+
     @CheckForNull
     @Override
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
@@ -14,23 +14,36 @@
 
 package org.basepom.inline.transformer.processor;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
+import org.basepom.inline.transformer.ClassCache;
 import org.basepom.inline.transformer.ClassNameUtils;
+import org.basepom.inline.transformer.ClassPathElement;
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 import org.basepom.inline.transformer.asm.ClassTransformer;
 import org.basepom.inline.transformer.asm.GetNameClassWriter;
+import org.basepom.inline.transformer.jfr.ClassRewriteEvent;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -41,39 +54,64 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A JarProcessor which applies a list of {@link ClassTransformer ClassTransformers} to any files ending in .class.
+ * <p>
+ * If an executor is provided, the class rewriting in the process phase is handed off to the executor. The rewritten resource continues down the chain
+ * immediately (using the class name computed in the scan phase) and its content is resolved when it is requested for the first time. This keeps the order
+ * in which resources reach the output sink unchanged.
+ * <p>
+ * If a {@link ClassCache} is provided, rewritten classes are taken from the cache and the class transformers only run for classes that are not cached.
+ * <p>
+ * Classes that none of the transformers may change (see {@link ClassTransformer#mayTransform(ClassReader)}) keep their original content.
  */
 public class ClassTransformerJarProcessor implements JarProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(ClassTransformerJarProcessor.class);
 
     private final List<ClassTransformer> classTransformers;
+    private final Executor executor;
+    private final ClassCache classCache;
+
+    // classes seen in the scan phase, indexed by class path element and resource name. Only used if an executor or a class cache is present.
+    // Entries are removed when the class is processed.
+    private final Map<ClassPathElement, Map<String, ScannedClass>> scannedClasses = new HashMap<>();
 
     public ClassTransformerJarProcessor(@Nonnull List<ClassTransformer> classTransformers) {
-        this.classTransformers = new ArrayList<>(classTransformers);
+        this(null, null, classTransformers);
     }
 
     public ClassTransformerJarProcessor(@Nonnull ClassTransformer... classTransformers) {
-        this(Arrays.asList(classTransformers));
+        this(null, null, Arrays.asList(classTransformers));
     }
 
+    public ClassTransformerJarProcessor(@Nullable Executor executor, @Nullable ClassCache classCache, @Nonnull List<ClassTransformer> classTransformers) {
+        this.executor = executor;
+        this.classCache = classCache;
+        this.classTransformers = new ArrayList<>(classTransformers);
+    }
 
     @Override
     public int getPriority() {
         return 80;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.CLASS);
+    }
+
     @CheckForNull
     @Override
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
         if (classPathResource.containsTags(ClassPathTag.CLASS)) {
-            ClassReader reader = new ClassReader(classPathResource.getContent());
-            GetNameClassWriter namer = new GetNameClassWriter(new ClassVisitor(Opcodes.ASM9) {});
-            ClassVisitor cv = namer;
-            for (ClassTransformer classTransformer : classTransformers) {
-                cv = classTransformer.transform(cv);
+            ScannedClass scannedClass = scanClass(classPathResource.getContent());
+
+            if (executor != null || scannedClass.cacheKey != null) {
+                String resourceName = classPathResource.getNameWithPrefix();
+                classPathResource.getClassPathElement().ifPresent(c ->
+                        scannedClasses.computeIfAbsent(c, k -> new HashMap<>()).put(resourceName, scannedClass));
             }
-            reader.accept(cv, ClassReader.EXPAND_FRAMES);
-            classPathResource = classPathResource.withName(ClassNameUtils.javaNameToPath(namer.getClassName()));
+
+            classPathResource = classPathResource.withName(scannedClass.fileName);
         }
         return chain.next(classPathResource);
     }
@@ -84,24 +122,167 @@ public class ClassTransformerJarProcessor implements JarProcessor {
         if (classPathResource.containsTags(ClassPathTag.CLASS)) {
             try {
                 ClassReader reader = new ClassReader(classPathResource.getContent());
-                String oldName = reader.getClassName();
-                ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-                GetNameClassWriter namer = new GetNameClassWriter(writer);
-                ClassVisitor cv = namer;
-                for (ClassTransformer classProcessor : classTransformers) {
-                    cv = classProcessor.transform(cv);
-                }
-                reader.accept(cv, ClassReader.EXPAND_FRAMES);
-                final String newName = namer.getClassName();
-                classPathResource = classPathResource.withName(ClassNameUtils.javaNameToPath(newName)).withContent(writer.toByteArray());
-                if (!newName.equals(oldName)) {
-                    LOG.debug(format("Transformed '%s' to '%s' (in %s)", oldName, newName, classPathResource.getClassPathElement()));
-                }
+                ScannedClass scannedClass = findScannedClass(classPathResource);
+                String cacheKey = scannedClass == null ? null : scannedClass.cacheKey;
+                if (!mayTransform(reader)) {
+                    // keep the original content, so the archive entry can be copied unchanged.
+                    classPathResource = classPathResource.withName(ClassNameUtils.javaNameToPath(reader.getClassName()));
+                } else if (executor == null || scannedClass == null) {
+                    TransformedClass transformedClass = transformClass(classPathResource.getContent(), cacheKey);
+                    classPathResource = classPathResource.withName(transformedClass.getFileName()).withContent(transformedClass.getContent());
+                    transformedClass.logRename(classPathResource);
+                } else {
+                    byte[] content = classPathResource.getContent();
+                    FutureTask<TransformedClass> task = new FutureTask<>(() -> transformClass(content, cacheKey));
+                    executor.execute(task);
 
+                    String className = classPathResource.getName();
+                    String archiveName = classPathResource.getClassPathElement().map(ClassPathElement::getArchiveName).orElse("<unknown>");
+                    String scannedName = scannedClass.fileName;
+                    classPathResource = classPathResource.withName(scannedName)
+                            .withContent(() -> awaitTransformedClass(task, scannedName, className, archiveName));
+                }
             } catch (UncheckedIOException e) {
                 LOG.warn(format("Failed to read class '%s'", classPathResource.getName()), e.getCause());
             }
         }
         return chain.next(classPathResource);
     }
+
+    @CheckForNull
+    private ScannedClass findScannedClass(ClassPathResource classPathResource) {
+        ClassPathElement classPathElement = classPathResource.getClassPathElement().orElse(null);
+        Map<String, ScannedClass> classes = classPathElement == null ? null : scannedClasses.get(classPathElement);
+        if (classes == null) {
+            return null;
+        }
+        ScannedClass scannedClass = classes.remove(classPathResource.getNameWithPrefix());
+        if (classes.isEmpty()) {
+            scannedClasses.remove(classPathElement);
+        }
+        return scannedClass;
+    }
+
+    private ScannedClass scanClass(byte[] content) {
+        ClassReader reader = new ClassReader(content);
+        if (!mayTransform(reader)) {
+            return new ScannedClass(ClassNameUtils.javaNameToPath(reader.getClassName()), null);
+        }
+
+        // the key is kept for the process phase, so each class is only hashed once. Only the name is read from the cache here.
+        String cacheKey = classCache == null ? null : classCache.getKey(content);
+        String cachedName = cacheKey == null ? null : classCache.getClassName(cacheKey);
+        if (cachedName != null) {
+            return new ScannedClass(ClassNameUtils.javaNameToPath(cachedName), cacheKey);
+        }
+
+        GetNameClassWriter namer = new GetNameClassWriter(new ClassVisitor(Opcodes.ASM9) {});
+        ClassVisitor cv = namer;
+        for (ClassTransformer classTransformer : classTransformers) {
+            cv = classTransformer.transform(cv);
+        }
+        reader.accept(cv, ClassReader.EXPAND_FRAMES);
+        return new ScannedClass(ClassNameUtils.javaNameToPath(namer.getClassName()), cacheKey);
+    }
+
+    // checks the constant pool of the class, this is much cheaper than rewriting it.
+    private boolean mayTransform(ClassReader reader) {
+        for (ClassTransformer classTransformer : classTransformers) {
+            if (classTransformer.mayTransform(reader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TransformedClass transformClass(byte[] content, @Nullable String cacheKey) {
+        ClassRewriteEvent event = new ClassRewriteEvent();
+        event.begin();
+
+        ClassReader reader = new ClassReader(content);
+        String oldName = reader.getClassName();
+
+        if (classCache != null && cacheKey == null) {
+            cacheKey = classCache.getKey(content);
+        }
+        byte[] cachedContent = cacheKey == null ? null : classCache.get(cacheKey);
+        TransformedClass transformedClass;
+        if (cachedContent != null) {
+            transformedClass = new TransformedClass(oldName, new ClassReader(cachedContent).getClassName(), cachedContent);
+        } else {
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            GetNameClassWriter namer = new GetNameClassWriter(writer);
+            ClassVisitor cv = namer;
+            for (ClassTransformer classProcessor : classTransformers) {
+                cv = classProcessor.transform(cv);
+            }
+            reader.accept(cv, ClassReader.EXPAND_FRAMES);
+            byte[] transformedContent = writer.toByteArray();
+
+            if (cacheKey != null) {
+                classCache.put(cacheKey, namer.getClassName(), transformedContent);
+            }
+            transformedClass = new TransformedClass(oldName, namer.getClassName(), transformedContent);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(oldName, transformedClass.newName, content.length, transformedClass.content.length, cachedContent != null);
+            event.commit();
+        }
+        return transformedClass;
+    }
+
+    private static byte[] awaitTransformedClass(FutureTask<TransformedClass> task, String expectedName, String className, String archiveName) {
+        // rewrites the class on this thread if no worker has started it yet. Waiting threads never depend on queued work.
+        task.run();
+
+        TransformedClass transformedClass;
+        try {
+            transformedClass = Futures.getUnchecked(task);
+        } catch (UncheckedExecutionException e) {
+            throw new IllegalStateException(format("Failed to transform class '%s' (in %s)", className, archiveName), e.getCause());
+        }
+        checkState(transformedClass.getFileName().equals(expectedName),
+                "Class was renamed to '%s' in the process phase but to '%s' in the scan phase", transformedClass.getFileName(), expectedName);
+        return transformedClass.getContent();
+    }
+
+    private static final class ScannedClass {
+
+        private final String fileName;
+        private final String cacheKey;
+
+        private ScannedClass(String fileName, @Nullable String cacheKey) {
+            this.fileName = fileName;
+            this.cacheKey = cacheKey;
+        }
+    }
+
+    private static final class TransformedClass {
+
+        private final String oldName;
+        private final String newName;
+        private final byte[] content;
+
+        private TransformedClass(String oldName, String newName, byte[] content) {
+            this.oldName = oldName;
+            this.newName = newName;
+            this.content = content;
+        }
+
+        private String getFileName() {
+            return ClassNameUtils.javaNameToPath(newName);
+        }
+
+        private byte[] getContent() {
+            return content;
+        }
+
+        private void logRename(ClassPathResource classPathResource) {
+            if (!newName.equals(oldName)) {
+                LOG.debug(format("Transformed '%s' to '%s' (in %s)", oldName, newName, classPathResource.getClassPathElement()));
+            }
+        }
+    }
 }
@@ -16,6 +16,7 @@ package org.basepom.inline.transformer.processor;
 
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.ResourceInterest;
 
 import javax.annotation.Nonnull;
 
@@ -40,4 +41,9 @@ public class DirectoryFilterProcessor extends AbstractFilterJarProcessor {
         return 10;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.DIRECTORY);
+    }
+
 }
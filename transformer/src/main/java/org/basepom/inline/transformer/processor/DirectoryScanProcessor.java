@@ -21,13 +21,10 @@ import org.basepom.inline.transformer.JarProcessor;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSortedSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,13 +57,9 @@ public class DirectoryScanProcessor implements JarProcessor {
     @Override
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
         String name = classPathResource.getNameWithPrefix();
-        List<String> elements = Splitter.on('/').splitToList(name);
-        if (elements.size() > 1) {
-            // any intermediate level directories have been removed by the Directory Filter Processor.
-            for (int i = 1; i < elements.size(); i++) {
-                String dirName = Joiner.on('/').join(elements.subList(0, i));
-                directories.add(dirName);
-            }
+        // any intermediate level directories have been removed by the Directory Filter Processor.
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+            directories.add(name.substring(0, i));
         }
 
         return chain.next(classPathResource);
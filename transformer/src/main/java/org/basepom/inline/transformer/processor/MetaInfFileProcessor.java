@@ -14,15 +14,17 @@
 
 package org.basepom.inline.transformer.processor;
 
+import static org.basepom.inline.transformer.ClassNameUtils.elementCount;
+import static org.basepom.inline.transformer.ClassNameUtils.elementEquals;
 import static org.basepom.inline.transformer.ClassNameUtils.pathToElements;
 
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.IOException;
-import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
@@ -38,6 +40,11 @@ public class MetaInfFileProcessor implements JarProcessor {
         return 50;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.RESOURCE).withPathPrefixes("META-INF/");
+    }
+
     @CheckForNull
     @Override
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
@@ -57,13 +64,13 @@ public class MetaInfFileProcessor implements JarProcessor {
         }
 
         // only operate on things that are in directly in META-INF
-        List<String> elements = pathToElements(classPathResource.getName());
-        if (elements.size() != 2 || !elements.get(0).equals("META-INF")) {
+        String path = classPathResource.getName();
+        if (elementCount(path) != 2 || !elementEquals(path, 0, "META-INF")) {
             return classPathResource;
         }
 
         String name = classPathResource.getClassPathElement()
-                .map(c -> Joiner.on('/').join("META-INF", "inlined", c.getGroupId(), c.getArtifactId(), elements.get(1)))
+                .map(c -> Joiner.on('/').join("META-INF", "inlined", c.getGroupId(), c.getArtifactId(), pathToElements(path).get(1)))
                 .orElse(classPathResource.getName());
 
         return classPathResource.withName(name);
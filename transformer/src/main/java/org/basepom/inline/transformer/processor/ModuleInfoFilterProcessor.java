@@ -17,10 +17,10 @@ package org.basepom.inline.transformer.processor;
 import org.basepom.inline.transformer.ClassNameUtils;
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.IOException;
-import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
@@ -34,11 +34,14 @@ public class ModuleInfoFilterProcessor extends AbstractFilterJarProcessor {
     }
 
     @Override
-    protected boolean isFiltered(@Nonnull ClassPathResource classPathResource) {
-        List<String> elements = ClassNameUtils.pathToElements(classPathResource.getName());
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.CLASS);
+    }
 
+    @Override
+    protected boolean isFiltered(@Nonnull ClassPathResource classPathResource) {
         return !classPathResource.containsTags(ClassPathTag.ROOT_JAR)
-                && MODULE_INFO.equals(elements.get(elements.size() - 1));
+                && ClassNameUtils.lastElementEquals(classPathResource.getName(), MODULE_INFO);
     }
 
     @CheckForNull
@@ -19,6 +19,7 @@ import static org.basepom.inline.transformer.ClassNameUtils.pathToElements;
 
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.JarProcessor;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.IOException;
@@ -36,6 +37,11 @@ public class MultiReleaseJarProcessor implements JarProcessor {
         return 20;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.pathPrefixes("META-INF/versions/");
+    }
+
     @CheckForNull
     @Override
     public ClassPathResource preScan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
@@ -14,6 +14,7 @@
 
 package org.basepom.inline.transformer.processor;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
 import org.basepom.inline.transformer.ClassNameUtils;
@@ -23,22 +24,33 @@ import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
 import org.basepom.inline.transformer.Rename;
 import org.basepom.inline.transformer.TransformerException;
+import org.basepom.inline.transformer.util.PrefixTrie;
 import org.basepom.inline.transformer.util.SetMultiTrie;
+import org.basepom.inline.transformer.util.SubstringMatcher;
+import org.basepom.inline.transformer.util.SymbolTable;
 
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.SetMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,9 +63,16 @@ public final class RemapperProcessor implements JarProcessor {
 
     private final SetMultimap<ClassPathElement, Rename> renamers = HashMultimap.create();
 
+    // all path elements of all resources. The tries are keyed by the interned elements.
+    private final SymbolTable symbolTable = new SymbolTable();
     private final SetMultiTrie<String, ClassPathResource> elementMatches = new SetMultiTrie<>();
     private final SetMultiTrie<String, ClassPathResource> packageNameMatches = new SetMultiTrie<>();
 
+    // names and tags of all resources in relocated elements. Elements without a prefix have no renamers, so they never change the result of a lookup.
+    private final SetMultimap<ClassPathElement, String> relocatedResources = HashMultimap.create();
+
+    // new names for all classes and resources, computed once all resources and rules are known.
+    private volatile Relocations relocations = null;
 
     @Override
     public int getPriority() {
@@ -65,7 +84,7 @@ public final class RemapperProcessor implements JarProcessor {
     public ClassPathResource preScan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
 
         ClassNameUtils.ifClass(classPathResource.getName(), p -> {
-            List<String> elements = ClassNameUtils.pathToElements(ClassNameUtils.stripClassExtension(classPathResource.getName()));
+            List<String> elements = symbolTable.internPath(ClassNameUtils.stripClassExtension(classPathResource.getName()));
             classPathResource.getClassPathElement().ifPresent(c -> {
                 String packageName = ClassNameUtils.pathToJavaName(ClassNameUtils.elementsToPath(ClassNameUtils.packageForElement(elements)));
                 addRule(c, packageName);
@@ -79,6 +98,8 @@ public final class RemapperProcessor implements JarProcessor {
 
     @VisibleForTesting
     void addRule(@Nonnull ClassPathElement classPathElement, String packageName) {
+        checkState(relocations == null, "relocations are frozen");
+
         classPathElement.getPrefix().ifPresent(p -> {
             Rename rename = Rename.forClassName(packageName,
                     Joiner.on('.').join(p, packageName),
@@ -91,7 +112,9 @@ public final class RemapperProcessor implements JarProcessor {
 
     @VisibleForTesting
     void addResource(@Nonnull ClassPathResource classPathResource) {
-        List<String> elements = ClassNameUtils.pathToElements(ClassNameUtils.stripClassExtension(classPathResource.getName()));
+        checkState(relocations == null, "relocations are frozen");
+
+        List<String> elements = symbolTable.internPath(ClassNameUtils.stripClassExtension(classPathResource.getName()));
         elementMatches.add(elements, classPathResource); // add the element itself
 
         ClassNameUtils.ifClass(classPathResource.getName(), p -> {
@@ -99,13 +122,178 @@ public final class RemapperProcessor implements JarProcessor {
             return p;
         });
 
+        classPathResource.getClassPathElement()
+                .filter(c -> c.getPrefix().isPresent())
+                .ifPresent(c -> relocatedResources.put(c, classPathResource.getName() + ImmutableSortedSet.copyOf(classPathResource.getTags())));
+
         LOG.debug(format("Accepting %s from %s", classPathResource.getName(), classPathResource.getClassPathElement()));
     }
 
+    /**
+     * Returns a fingerprint of the relocation rules. Classes rewritten with rules that have the same fingerprint are identical. Must only be called after
+     * the pre-scan phase has completed.
+     */
+    public String getRulesFingerprint() {
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        relocatedResources.keySet().stream()
+                .sorted(Comparator.comparing((ClassPathElement c) -> c.getPrefix().orElse(""))
+                        .thenComparing(c -> Objects.toString(c.getGroupId(), ""))
+                        .thenComparing(c -> Objects.toString(c.getArtifactId(), "")))
+                .forEach(c -> {
+                    hasher.putUnencodedChars(c.getPrefix().orElse(""))
+                            .putBoolean(c.isHideClasses());
+                    relocatedResources.get(c).stream().sorted().forEach(name -> hasher.putUnencodedChars(name).putByte((byte) 0));
+                    hasher.putByte((byte) 1);
+                });
+
+        return hasher.hash().toString();
+    }
+
+
+    /**
+     * Computes the new names of all classes, packages and resources. Called at the end of the pre-scan phase, no resources or rules can be added
+     * afterwards. Looking up a name freezes the relocations if this has not been called before.
+     */
+    public void freeze() {
+        getRelocations();
+    }
+
+    /**
+     * Returns the new name for a class or resource path or null if the path is not relocated.
+     */
+    @CheckForNull
+    public String mapName(String path) {
+        Relocations relocations = getRelocations();
+        if (CharMatcher.whitespace().matchesAnyOf(path)) {
+            // the table only contains names with trimmed elements.
+            synchronized (this) {
+                List<String> elements = symbolTable.findPath(path);
+                return elements == null ? null : computeNewName(elements, path);
+            }
+        }
+        return relocations.names.get(path);
+    }
+
+    /**
+     * Returns true if the value starts with the name of a relocated package, either as a path or as a class name. Only such values can be renamed; this
+     * is checked in a single pass over the start of the value.
+     */
+    public boolean isRelocationCandidate(String value) {
+        return getRelocations().packagePrefixes.match(value) != 0;
+    }
+
+    /**
+     * Returns true if the name of a relocated package, either as a path or as a class name, occurs anywhere in the characters between start and end.
+     * Class names, descriptors, signatures and string constants that contain no such name are never changed by relocation.
+     */
+    public boolean containsRelocatedName(char[] value, int start, int end) {
+        return getRelocations().packageNames.containsAny(value, start, end);
+    }
+
+    /**
+     * Returns the renamers for the class or package with the given path. Values that start with this class or package are renamed with these renamers.
+     */
+    public ImmutableSortedSet<Rename> prefixRenamers(String path) {
+        return getRelocations().prefixRenamers.getOrDefault(path, ImmutableSortedSet.of());
+    }
+
+    private Relocations getRelocations() {
+        Relocations result = relocations;
+        if (result == null) {
+            synchronized (this) {
+                result = relocations;
+                if (result == null) {
+                    result = computeRelocations();
+                    relocations = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Relocations computeRelocations() {
+        elementMatches.freeze();
+        packageNameMatches.freeze();
+
+        ImmutableMap.Builder<String, String> names = ImmutableMap.builder();
+        Map<String, ImmutableSortedSet<Rename>> prefixRenamers = new HashMap<>();
+        // most classes share the renamers of their element, keep only one copy of each set.
+        Map<ImmutableSortedSet<Rename>, ImmutableSortedSet<Rename>> renamerSets = new HashMap<>();
+
+        elementMatches.forEach((elements, resources) -> {
+            String path = ClassNameUtils.elementsToPath(elements);
+            String newName = computeNewName(elements, path);
+            if (newName != null) {
+                names.put(path, newName);
+            }
+            ImmutableSortedSet<Rename> classRenamers = renamersForElement(elements, ClassPathTag.CLASS);
+            if (!classRenamers.isEmpty()) {
+                prefixRenamers.put(path, renamerSets.computeIfAbsent(classRenamers, r -> r));
+            }
+        });
+
+        packageNameMatches.forEach((elements, resources) -> {
+            String path = ClassNameUtils.elementsToPath(elements);
+            if (!prefixRenamers.containsKey(path)) {
+                ImmutableSortedSet<Rename> packageRenamers = packageNameRenamersForElement(elements, ClassPathTag.CLASS);
+                if (!packageRenamers.isEmpty()) {
+                    prefixRenamers.put(path, renamerSets.computeIfAbsent(packageRenamers, r -> r));
+                }
+            }
+        });
+
+        PrefixTrie packagePrefixes = new PrefixTrie();
+        Set<String> packageNames = new HashSet<>();
+        for (Rename rename : renamers.values()) {
+            packagePrefixes.add(rename.getSourcePath(), 1);
+            packagePrefixes.add(ClassNameUtils.toPackage(rename.getSourcePath()), 1);
+            packageNames.add(rename.getSourcePath());
+            packageNames.add(ClassNameUtils.toPackage(rename.getSourcePath()));
+        }
+
+        Relocations result = new Relocations(names.build(), ImmutableMap.copyOf(prefixRenamers), packagePrefixes, new SubstringMatcher(packageNames));
+        LOG.debug(format("Relocating %d names, %d class and package prefixes", result.names.size(), result.prefixRenamers.size()));
+        return result;
+    }
+
+    // computes a new name for a given class or resource.
+    @CheckForNull
+    private String computeNewName(List<String> elements, String path) {
+        // try classes first.
+        ImmutableSortedSet<Rename> classRenamers = renamersForElement(elements, ClassPathTag.CLASS);
+        if (!classRenamers.isEmpty()) {
+            return renamePath(path, classRenamers, true); // enable hide classes stuff
+        }
+
+        // try resource. Resource are never hidden
+        ImmutableSortedSet<Rename> resourceRenamers = renamersForElement(elements, ClassPathTag.RESOURCE);
+        if (!resourceRenamers.isEmpty()) {
+            return renamePath(path, resourceRenamers, false); // resources are never hidden
+        }
+
+        return null;
+    }
+
+    @CheckForNull
+    private static String renamePath(String path, ImmutableSortedSet<Rename> renames, boolean hideClasses) {
+        for (Rename rename : renames) {
+            String result = rename.renameClassName(path, hideClasses);
+            if (result != null) {
+                // first match takes the cake
+                return result;
+            }
+        }
+        return null;
+    }
 
     // find all renamers for a specific class path resource
     public ImmutableSet<Rename> renamersForClassPathResource(ClassPathResource resource) {
-        Set<ClassPathElement> candidates = computeCandidates(elementMatches, ClassNameUtils.pathToElements(resource.getName()), null);
+        List<String> elements = symbolTable.findPath(resource.getName());
+        if (elements == null) {
+            return ImmutableSet.of();
+        }
+        Set<ClassPathElement> candidates = computeCandidates(elementMatches, elements, null);
 
         return candidates.stream()
                 .filter(c -> c.equals(resource.getClassPathElement().orElse(null)))
@@ -140,4 +328,20 @@ public final class RemapperProcessor implements JarProcessor {
                 .collect(Collectors.toUnmodifiableSet());
     }
 
+    private static final class Relocations {
+
+        private final ImmutableMap<String, String> names;
+        private final ImmutableMap<String, ImmutableSortedSet<Rename>> prefixRenamers;
+        // all relocated packages, in path and class name form.
+        private final PrefixTrie packagePrefixes;
+        private final SubstringMatcher packageNames;
+
+        private Relocations(ImmutableMap<String, String> names, ImmutableMap<String, ImmutableSortedSet<Rename>> prefixRenamers,
+                PrefixTrie packagePrefixes, SubstringMatcher packageNames) {
+            this.names = names;
+            this.prefixRenamers = prefixRenamers;
+            this.packagePrefixes = packagePrefixes;
+            this.packageNames = packageNames;
+        }
+    }
 }
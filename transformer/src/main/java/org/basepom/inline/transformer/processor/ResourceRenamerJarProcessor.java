@@ -20,6 +20,7 @@ import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.JarProcessor;
 import org.basepom.inline.transformer.Rename;
+import org.basepom.inline.transformer.ResourceInterest;
 import org.basepom.inline.transformer.TransformerException;
 
 import java.io.IOException;
@@ -51,6 +52,11 @@ public class ResourceRenamerJarProcessor implements JarProcessor {
         return 90;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.RESOURCE);
+    }
+
     @Override
     @CheckForNull
     public ClassPathResource scan(@Nonnull ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
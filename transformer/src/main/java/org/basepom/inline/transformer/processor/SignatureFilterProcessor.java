@@ -14,12 +14,13 @@
 
 package org.basepom.inline.transformer.processor;
 
-import static org.basepom.inline.transformer.ClassNameUtils.pathToElements;
+import static org.basepom.inline.transformer.ClassNameUtils.elementEquals;
+import static org.basepom.inline.transformer.ClassNameUtils.lastElementEndsWith;
 
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
+import org.basepom.inline.transformer.ResourceInterest;
 
-import java.util.List;
 import javax.annotation.Nonnull;
 
 /**
@@ -35,18 +36,22 @@ public class SignatureFilterProcessor extends AbstractFilterJarProcessor {
         return 40;
     }
 
+    @Override
+    public ResourceInterest getInterest(Phase phase) {
+        return ResourceInterest.tagged(ClassPathTag.RESOURCE).withPathPrefixes("META-INF/");
+    }
+
     @Override
     protected boolean isFiltered(@Nonnull ClassPathResource classPathResource) {
         if (!classPathResource.containsTags(ClassPathTag.RESOURCE)) {
             return false;
         }
 
-        List<String> elements = pathToElements(classPathResource.getName());
-        if (elements.isEmpty() || !elements.get(0).equals("META-INF")) {
+        String name = classPathResource.getName();
+        if (!elementEquals(name, 0, "META-INF")) {
             return false;
         }
 
-        String filename = elements.get(elements.size() - 1);
-        return filename.endsWith(".SF") || filename.endsWith(".DSA") || filename.endsWith(".RSA");
+        return lastElementEndsWith(name, ".SF") || lastElementEndsWith(name, ".DSA") || lastElementEndsWith(name, ".RSA");
     }
 }
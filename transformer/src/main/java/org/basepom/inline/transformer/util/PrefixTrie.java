@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps string prefixes to bit sets. Looking up a value returns the union of the bits of all prefixes of the value, in a single pass over the value.
+ */
+public final class PrefixTrie {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    // transitions of node n go to targets[n][i] on the character labels[n][i], labels are sorted. Node 0 is the root node.
+    private char[][] labels = {NO_LABELS};
+    private int[][] targets = {NO_TARGETS};
+    private long[] bits = {0L};
+    private int size = 1;
+
+    /**
+     * Adds the given bits for a prefix. The empty prefix matches every value.
+     */
+    public void add(String prefix, long bits) {
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            int index = Arrays.binarySearch(labels[node], c);
+            if (index >= 0) {
+                node = targets[node][index];
+            } else {
+                int next = addNode();
+                insert(node, -index - 1, c, next);
+                node = next;
+            }
+        }
+        this.bits[node] |= bits;
+    }
+
+    /**
+     * Returns the union of the bits of all prefixes of the value.
+     */
+    public long match(String value) {
+        int node = 0;
+        long result = bits[0];
+        for (int i = 0; i < value.length(); i++) {
+            int index = Arrays.binarySearch(labels[node], value.charAt(i));
+            if (index < 0) {
+                break;
+            }
+            node = targets[node][index];
+            result |= bits[node];
+        }
+        return result;
+    }
+
+    private int addNode() {
+        if (size == bits.length) {
+            int capacity = size * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+        }
+        labels[size] = NO_LABELS;
+        targets[size] = NO_TARGETS;
+        return size++;
+    }
+
+    private void insert(int node, int position, char c, int target) {
+        char[] nodeLabels = labels[node];
+        int[] nodeTargets = targets[node];
+
+        char[] newLabels = new char[nodeLabels.length + 1];
+        int[] newTargets = new int[nodeTargets.length + 1];
+        System.arraycopy(nodeLabels, 0, newLabels, 0, position);
+        System.arraycopy(nodeTargets, 0, newTargets, 0, position);
+        newLabels[position] = c;
+        newTargets[position] = target;
+        System.arraycopy(nodeLabels, position, newLabels, position + 1, nodeLabels.length - position);
+        System.arraycopy(nodeTargets, position, newTargets, position + 1, nodeTargets.length - position);
+
+        labels[node] = newLabels;
+        targets[node] = newTargets;
+    }
+}
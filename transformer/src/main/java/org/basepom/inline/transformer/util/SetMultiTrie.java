@@ -14,29 +14,53 @@
 
 package org.basepom.inline.transformer.util;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.Set;
 import java.util.StringJoiner;
-import java.util.function.Function;
+import java.util.function.BiConsumer;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
+/**
+ * Maps sequences of elements to sets of values. Values are added to a mutable trie. Once all values are added, {@link #freeze()} converts the trie into a
+ * compact, read-only form: all nodes are stored in a few arrays, the children of a node are sorted by hash code and the value sets are built once. Lookups
+ * in a frozen trie do not allocate and can run concurrently.
+ */
 public final class SetMultiTrie<T, U> {
 
-    private final TrieNode<T, U> rootNode = new TrieNode<>();
+    private TrieNode<T, U> rootNode = new TrieNode<>();
+    private volatile FrozenTrie<T, U> frozenTrie = null;
 
     public void add(Collection<T> elements, U value) {
+        checkState(frozenTrie == null, "trie is frozen");
+
         TrieNode<T, U> current = rootNode;
 
         for (T element : elements) {
-            current = current.computeIfAbsent(element, t -> new TrieNode<>());
+            current = current.computeIfAbsent(element);
         }
         current.terminal(value); // end of an entry -> current node is a terminal node
     }
 
     public ImmutableSet<U> getValues(Collection<T> elements) {
+        FrozenTrie<T, U> frozen = frozenTrie;
+        if (frozen != null) {
+            return frozen.getValues(elements);
+        }
+
         TrieNode<T, U> current = rootNode;
 
         for (T element : elements) {
@@ -48,36 +72,188 @@ public final class SetMultiTrie<T, U> {
         return current.getValues();
     }
 
+    /**
+     * Converts the trie into its read-only form. No values can be added afterwards. Calling this method more than once has no effect.
+     */
+    public synchronized void freeze() {
+        if (frozenTrie == null) {
+            frozenTrie = new FrozenTrie<>(rootNode);
+            rootNode = null;
+        }
+    }
+
+    /**
+     * Calls the consumer for every entry that has values, with the elements of the entry and its values.
+     */
+    public void forEach(BiConsumer<List<T>, ImmutableSet<U>> consumer) {
+        FrozenTrie<T, U> frozen = frozenTrie;
+        if (frozen != null) {
+            frozen.forEach(0, new ArrayList<>(), consumer);
+        } else {
+            forEach(rootNode, new ArrayList<>(), consumer);
+        }
+    }
+
+    private static <T, U> void forEach(TrieNode<T, U> node, List<T> elements, BiConsumer<List<T>, ImmutableSet<U>> consumer) {
+        ImmutableSet<U> values = node.getValues();
+        if (!values.isEmpty()) {
+            consumer.accept(ImmutableList.copyOf(elements), values);
+        }
+        for (Map.Entry<T, TrieNode<T, U>> entry : node.children().entrySet()) {
+            elements.add(entry.getKey());
+            forEach(entry.getValue(), elements, consumer);
+            elements.remove(elements.size() - 1);
+        }
+    }
+
     private static final class TrieNode<T, U> {
 
-        private final ImmutableSet.Builder<U> builder = ImmutableSet.builder();
-        private final Map<T, TrieNode<T, U>> map = new HashMap<>();
+        // most nodes are leaves (one for each class), so children and values are only allocated when needed.
+        private Map<T, TrieNode<T, U>> map = null;
+        private Set<U> values = null;
 
         private TrieNode() {
         }
 
-        private TrieNode<T, U> computeIfAbsent(T value, Function<T, TrieNode<T, U>> function) {
-            return map.computeIfAbsent(value, function);
+        private TrieNode<T, U> computeIfAbsent(T value) {
+            if (map == null) {
+                map = new HashMap<>();
+            }
+            return map.computeIfAbsent(value, t -> new TrieNode<>());
         }
 
         private TrieNode<T, U> get(T value) {
-            return map.get(value);
+            return map == null ? null : map.get(value);
+        }
+
+        private Map<T, TrieNode<T, U>> children() {
+            return map == null ? Map.of() : map;
         }
 
         private void terminal(@NonNull U value) {
-            this.builder.add(value);
+            if (values == null) {
+                values = new LinkedHashSet<>();
+            }
+            this.values.add(value);
         }
 
         private ImmutableSet<U> getValues() {
-            return builder.build();
+            return values == null ? ImmutableSet.of() : ImmutableSet.copyOf(values);
         }
 
         @Override
         public String toString() {
             return new StringJoiner(", ", TrieNode.class.getSimpleName() + "[", "]")
-                    .add("values=" + builder.build())
+                    .add("values=" + getValues())
                     .add("map=" + map)
                     .toString();
         }
     }
+
+    /**
+     * Nodes are numbered in breadth-first order, so the children of each node have consecutive numbers. Node 0 is the root node.
+     */
+    private static final class FrozenTrie<T, U> {
+
+        // children of node n are the nodes firstChild[n] to firstChild[n + 1] - 1, sorted by the hash code of their element.
+        private final int[] firstChild;
+        // element and its hash code of the edge that leads to a node.
+        private final Object[] elements;
+        private final int[] hashes;
+        private final ImmutableSet<U>[] values;
+
+        @SuppressWarnings("unchecked")
+        private FrozenTrie(TrieNode<T, U> rootNode) {
+            List<TrieNode<T, U>> nodes = new ArrayList<>();
+            List<T> nodeElements = new ArrayList<>();
+            nodes.add(rootNode);
+            nodeElements.add(null);
+
+            List<Integer> childIndex = new ArrayList<>();
+            Queue<Integer> queue = new ArrayDeque<>();
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                int index = queue.remove();
+                childIndex.add(nodes.size());
+
+                List<Map.Entry<T, TrieNode<T, U>>> children = new ArrayList<>(nodes.get(index).children().entrySet());
+                children.sort(Comparator.comparingInt(e -> e.getKey().hashCode()));
+                for (Map.Entry<T, TrieNode<T, U>> child : children) {
+                    queue.add(nodes.size());
+                    nodes.add(child.getValue());
+                    nodeElements.add(child.getKey());
+                }
+            }
+            childIndex.add(nodes.size());
+
+            int size = nodes.size();
+            this.firstChild = childIndex.stream().mapToInt(Integer::intValue).toArray();
+            this.elements = nodeElements.toArray();
+            this.hashes = new int[size];
+            this.values = new ImmutableSet[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = i == 0 ? 0 : elements[i].hashCode();
+                values[i] = nodes.get(i).getValues();
+            }
+        }
+
+        private ImmutableSet<U> getValues(Collection<T> path) {
+            int node = 0;
+            if (path instanceof List && path instanceof RandomAccess) {
+                List<T> list = (List<T>) path;
+                for (int i = 0; i < list.size(); i++) {
+                    node = findChild(node, list.get(i));
+                    if (node < 0) {
+                        return ImmutableSet.of();
+                    }
+                }
+            } else {
+                for (T element : path) {
+                    node = findChild(node, element);
+                    if (node < 0) {
+                        return ImmutableSet.of();
+                    }
+                }
+            }
+            return values[node];
+        }
+
+        private int findChild(int node, T element) {
+            int hash = element.hashCode();
+            int low = firstChild[node];
+            int high = firstChild[node + 1] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (hashes[mid] < hash) {
+                    low = mid + 1;
+                } else if (hashes[mid] > hash) {
+                    high = mid - 1;
+                } else {
+                    // find the first child with this hash code, then check all children with the same hash code.
+                    while (mid > firstChild[node] && hashes[mid - 1] == hash) {
+                        mid--;
+                    }
+                    for (; mid < firstChild[node + 1] && hashes[mid] == hash; mid++) {
+                        if (elements[mid].equals(element)) {
+                            return mid;
+                        }
+                    }
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void forEach(int node, List<T> path, BiConsumer<List<T>, ImmutableSet<U>> consumer) {
+            if (!values[node].isEmpty()) {
+                consumer.accept(ImmutableList.copyOf(path), values[node]);
+            }
+            for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                path.add((T) elements[child]);
+                forEach(child, path, consumer);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Finds any of a fixed set of strings anywhere in a value, in a single pass over the value (Aho-Corasick). The matcher is immutable and can be used
+ * concurrently.
+ */
+public final class SubstringMatcher {
+
+    // transitions of state n go to targets[n][i] on the character labels[n][i], labels are sorted. State 0 is the start state.
+    private final char[][] labels;
+    private final int[][] targets;
+    // state to continue with if there is no transition for a character.
+    private final int[] failure;
+    // true if any of the strings ends in this state.
+    private final boolean[] matches;
+
+    public SubstringMatcher(Iterable<String> values) {
+        checkNotNull(values, "values is null");
+
+        List<Map<Character, Integer>> transitions = new ArrayList<>();
+        List<Boolean> terminals = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        terminals.add(false);
+
+        for (String value : values) {
+            int state = 0;
+            for (int i = 0; i < value.length(); i++) {
+                Integer next = transitions.get(state).get(value.charAt(i));
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(state).put(value.charAt(i), next);
+                    transitions.add(new TreeMap<>());
+                    terminals.add(false);
+                }
+                state = next;
+            }
+            terminals.set(state, true);
+        }
+
+        int size = transitions.size();
+        this.labels = new char[size][];
+        this.targets = new int[size][];
+        this.failure = new int[size];
+        this.matches = new boolean[size];
+
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> stateTransitions = transitions.get(state);
+            labels[state] = new char[stateTransitions.size()];
+            targets[state] = new int[stateTransitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : stateTransitions.entrySet()) {
+                labels[state][i] = entry.getKey();
+                targets[state][i++] = entry.getValue();
+            }
+            matches[state] = terminals.get(state);
+        }
+
+        // states are visited in order of their depth, so the failure state of each parent is known.
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < labels[state].length; i++) {
+                int target = targets[state][i];
+                if (state != 0) {
+                    int fallback = failure[state];
+                    int next = next(fallback, labels[state][i]);
+                    while (next < 0 && fallback != 0) {
+                        fallback = failure[fallback];
+                        next = next(fallback, labels[state][i]);
+                    }
+                    failure[target] = Math.max(next, 0);
+                    matches[target] |= matches[failure[target]];
+                }
+                queue.add(target);
+            }
+        }
+    }
+
+    /**
+     * Returns true if any of the strings occurs in the characters between start and end.
+     */
+    public boolean containsAny(char[] value, int start, int end) {
+        if (matches[0]) {
+            return true; // the empty string matches everything
+        }
+
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = value[i];
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = next(state, c);
+            }
+            state = Math.max(next, 0);
+            if (matches[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any of the strings occurs in the value.
+     */
+    public boolean containsAny(String value) {
+        return containsAny(value.toCharArray(), 0, value.length());
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(labels[state], c);
+        return index < 0 ? -1 : targets[state][index];
+    }
+}
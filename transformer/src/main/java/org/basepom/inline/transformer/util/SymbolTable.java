@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.basepom.inline.transformer.ClassNameUtils.elementCount;
+import static org.basepom.inline.transformer.ClassNameUtils.trimEnd;
+import static org.basepom.inline.transformer.ClassNameUtils.trimStart;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Interns the elements of class, package and resource paths. Each element is stored once, paths are split into the interned element instances
+ * without creating new strings. Looking up a path that contains an unknown element fails without splitting the rest of the path.
+ * <p>
+ * Paths are split the same way as {@link org.basepom.inline.transformer.ClassNameUtils#pathToElements(String)} does. Adding symbols is not thread safe;
+ * lookups can run concurrently once all symbols have been added.
+ */
+public final class SymbolTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // open addressing hash table, the capacity is always a power of two.
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Returns the interned instance of the path element between start and end. Adds the element if it is not yet known.
+     */
+    public String intern(String value, int start, int end) {
+        checkNotNull(value, "value is null");
+
+        int slot = findSlot(symbols, value, start, end);
+        String symbol = symbols[slot];
+        if (symbol == null) {
+            symbol = value.substring(start, end);
+            symbols[slot] = symbol;
+            if (++size > symbols.length / 2) {
+                resize();
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Returns the interned instance of the path element between start and end or null if the element is not known.
+     */
+    @CheckForNull
+    public String find(String value, int start, int end) {
+        checkNotNull(value, "value is null");
+
+        String[] table = symbols;
+        return table[findSlot(table, value, start, end)];
+    }
+
+    /**
+     * Splits the path into interned elements. Adds all elements that are not yet known.
+     */
+    public ImmutableList<String> internPath(String path) {
+        checkNotNull(path, "path is null");
+
+        String[] elements = new String[elementCount(path)];
+        int start = 0;
+        for (int i = 0; i < elements.length; i++) {
+            int end = elementEnd(path, start);
+            int elementStart = trimStart(path, start, end);
+            elements[i] = intern(path, elementStart, trimEnd(path, elementStart, end));
+            start = end + 1;
+        }
+        return ImmutableList.copyOf(elements);
+    }
+
+    /**
+     * Splits the path into interned elements. Returns null if any element is not known.
+     */
+    @CheckForNull
+    public List<String> findPath(String path) {
+        List<String> elements = findPathPrefix(path);
+        return elements.size() == elementCount(path) ? elements : null;
+    }
+
+    /**
+     * Splits the path into interned elements up to the first element that is not known.
+     */
+    public List<String> findPathPrefix(String path) {
+        checkNotNull(path, "path is null");
+
+        String[] elements = new String[elementCount(path)];
+        int count = 0;
+        int start = 0;
+        while (count < elements.length) {
+            int end = elementEnd(path, start);
+            int elementStart = trimStart(path, start, end);
+            String element = find(path, elementStart, trimEnd(path, elementStart, end));
+            if (element == null) {
+                break;
+            }
+            elements[count++] = element;
+            start = end + 1;
+        }
+        return Arrays.asList(elements).subList(0, count);
+    }
+
+    /**
+     * Returns the number of interned elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        String[] table = new String[symbols.length * 2];
+        for (String symbol : symbols) {
+            if (symbol != null) {
+                table[findSlot(table, symbol, 0, symbol.length())] = symbol;
+            }
+        }
+        symbols = table;
+    }
+
+    private static int findSlot(String[] table, String value, int start, int end) {
+        int length = end - start;
+        int mask = table.length - 1;
+        int slot = spread(hash(value, start, end)) & mask;
+        while (true) {
+            String symbol = table[slot];
+            if (symbol == null || (symbol.length() == length && value.startsWith(symbol, start))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // same as String#hashCode for the region.
+    private static int hash(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int elementEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public final class WorkerPool {
+
+    private WorkerPool() {
+        throw new AssertionError("WorkerPool can not be instantiated");
+    }
+
+    /**
+     * Creates a pool of daemon threads for rewriting classes and compressing jar entries. A single pool can be shared by the {@link
+     * org.basepom.inline.transformer.JarTransformer} and the {@link org.basepom.inline.transformer.zip.ZipEntrySpool}.
+     * <p>
+     * The queue is bounded, the submitting thread runs a task itself if the workers fall behind. This limits the amount of content that is held in memory
+     * waiting for a worker. Callers must shut down the pool.
+     *
+     * @param threads Number of worker threads.
+     */
+    public static ExecutorService create(int threads) {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("inline-worker-%d")
+                .setDaemon(true)
+                .build();
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
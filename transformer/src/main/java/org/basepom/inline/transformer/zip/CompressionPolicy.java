@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.zip.Deflater;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Controls how entries of the output jar are compressed.
+ */
+public final class CompressionPolicy {
+
+    public enum Mode {
+        /** Deflate all entries. */
+        DEFLATED,
+        /** Store all entries without compression. */
+        STORED,
+        /** Store entries that are already compressed or that would grow when deflated, deflate all others. */
+        AUTO
+    }
+
+    public static final CompressionPolicy DEFAULT = new CompressionPolicy(Mode.DEFLATED, Deflater.DEFAULT_COMPRESSION);
+
+    // file formats that are already compressed. Deflating them costs time and rarely saves space.
+    private static final ImmutableSet<String> COMPRESSED_EXTENSIONS = ImmutableSet.of(
+            "jar", "war", "ear", "zip", "jmod",
+            "gz", "tgz", "bz2", "xz", "lz4", "zst", "7z",
+            "png", "jpg", "jpeg", "gif", "webp",
+            "woff", "woff2",
+            "mp3", "mp4", "ogg");
+
+    private final Mode mode;
+    private final int level;
+
+    /**
+     * Creates a new compression policy.
+     *
+     * @param mode  The compression mode.
+     * @param level The deflate level, 0-9 or -1 for the default level.
+     */
+    public CompressionPolicy(Mode mode, int level) {
+        this.mode = checkNotNull(mode, "mode is null");
+        checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                "compression level must be between 0 and 9 or -1, was %s", level);
+        this.level = level;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns true if the compressed data of an unmodified input entry can be copied to the output as-is. This is only the case if the entry already
+     * uses the compression of this policy. An explicit compression level always recompresses all entries, as the level of an input entry is unknown.
+     */
+    public boolean isRawCopyAllowed(MappedZipEntry entry) {
+        checkNotNull(entry, "entry is null");
+
+        if (level != Deflater.DEFAULT_COMPRESSION) {
+            return false;
+        }
+        switch (mode) {
+            case STORED:
+                return entry.getMethod() == MappedZipEntry.STORED;
+            case DEFLATED:
+                return entry.getMethod() == MappedZipEntry.DEFLATED;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns true if an entry should be stored without trying to deflate it.
+     */
+    boolean isStored(String name) {
+        switch (mode) {
+            case STORED:
+                return true;
+            case AUTO:
+                int index = name.lastIndexOf('.');
+                return index >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(index + 1).toLowerCase(Locale.ROOT));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if an entry should be stored because deflating did not make it smaller.
+     */
+    boolean isStored(int size, int compressedSize) {
+        return mode == Mode.AUTO && compressedSize >= size;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CompressionPolicy.class.getSimpleName() + "[", "]")
+                .add("mode=" + mode)
+                .add("level=" + level)
+                .toString();
+    }
+}
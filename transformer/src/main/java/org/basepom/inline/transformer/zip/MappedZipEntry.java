@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static java.lang.String.format;
+
+import java.nio.ByteBuffer;
+import java.util.StringJoiner;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An entry in a {@link MappedZipFile}.
+ */
+public final class MappedZipEntry {
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private final MappedZipFile zipFile;
+    private final String name;
+    private final int method;
+    private final int crc;
+    private final int compressedSize;
+    private final int size;
+    private final long time;
+    private final long localHeaderOffset;
+
+    MappedZipEntry(MappedZipFile zipFile, String name, int method, int crc, int compressedSize, int size, long time, long localHeaderOffset) {
+        this.zipFile = zipFile;
+        this.name = name;
+        this.method = method;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.time = time;
+        this.localHeaderOffset = localHeaderOffset;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * Returns the compression method, either {@link #STORED} or {@link #DEFLATED}.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public int getCrc() {
+        return crc;
+    }
+
+    public int getCompressedSize() {
+        return compressedSize;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the modification time in milliseconds. This is the same value that {@link java.util.zip.ZipEntry#getTime()} reports.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the entry data as stored in the archive (compressed for deflated entries). The buffer is read-only, it is a view of the archive if the archive is mapped.
+     */
+    public ByteBuffer getRawData() throws ZipException {
+        zipFile.checkOpen();
+
+        ByteBuffer localHeader = zipFile.slice(localHeaderOffset, MappedZipFile.LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != MappedZipFile.LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException(format("%s: invalid local header for '%s'", zipFile.getFile(), name));
+        }
+        // the local extra field may differ from the central directory extra field.
+        int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+        int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+
+        return zipFile.slice(localHeaderOffset + MappedZipFile.LOCAL_HEADER_SIZE + nameLength + extraLength, compressedSize).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the uncompressed entry data. Stored entries of mapped archives are returned as a read-only view of the archive without copying.
+     */
+    public ByteBuffer getContentBuffer() throws ZipException {
+        ByteBuffer rawData = getRawData();
+        if (method == STORED) {
+            return rawData;
+        } else {
+            return ByteBuffer.wrap(inflate(rawData));
+        }
+    }
+
+    /**
+     * Returns a copy of the uncompressed entry data.
+     */
+    public byte[] getContent() throws ZipException {
+        ByteBuffer rawData = getRawData();
+        if (method == STORED) {
+            byte[] content = new byte[rawData.remaining()];
+            rawData.get(content);
+            return content;
+        } else {
+            return inflate(rawData);
+        }
+    }
+
+    private byte[] inflate(ByteBuffer rawData) throws ZipException {
+        byte[] content = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(rawData);
+            int offset = 0;
+            while (offset < size) {
+                int count = inflater.inflate(content, offset, size - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != size) {
+                throw new ZipException(format("%s: '%s' inflated to %d bytes, expected %d", zipFile.getFile(), name, offset, size));
+            }
+            return content;
+        } catch (DataFormatException e) {
+            ZipException zipException = new ZipException(format("%s: '%s' is corrupt", zipFile.getFile(), name));
+            zipException.initCause(e);
+            throw zipException;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", MappedZipEntry.class.getSimpleName() + "[", "]")
+                .add("name='" + name + "'")
+                .add("method=" + method)
+                .add("compressedSize=" + compressedSize)
+                .add("size=" + size)
+                .toString();
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.StringJoiner;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A read-only zip archive that parses the central directory itself. Stored entries are handed out as buffers and deflated entries are inflated without
+ * intermediate copies.
+ * <p>
+ * Archives of at least {@link #MAPPING_THRESHOLD} bytes are memory mapped and entry content is read straight from the mapped region. A mapping can not be
+ * released explicitly, it stays in place until it is garbage collected, even after the archive has been closed. On Windows, the file stays locked and can
+ * not be deleted or replaced until then. All smaller archives are read with positional reads from an open file channel, which is released when the
+ * archive is closed. {@link #openUnmapped(File)} never maps an archive.
+ * <p>
+ * Archives that use features not supported by this reader (encryption, compression methods other than stored and deflated, more than 2GB in size) are
+ * rejected with a {@link ZipException} when they are opened. Callers are expected to fall back to {@link java.util.zip.ZipFile} in that case.
+ */
+public final class MappedZipFile implements Closeable {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+
+    static final int EXTRA_ZIP64 = 0x0001;
+
+    /**
+     * Archives of at least this size are memory mapped.
+     */
+    public static final long MAPPING_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private final File file;
+    private final long size;
+    // either the mapped archive or the channel to read from.
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final ImmutableList<MappedZipEntry> entries;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Maps the given file and reads its central directory.
+     *
+     * @param file The zip archive.
+     * @return A mapped zip file.
+     * @throws ZipException If the file is not a zip archive or uses unsupported features.
+     * @throws IOException  If the file could not be read.
+     */
+    public static MappedZipFile open(File file) throws IOException {
+        return open(file, MAPPING_THRESHOLD);
+    }
+
+    /**
+     * Opens the given file without mapping it, regardless of its size. Use this for archives that are moved, replaced or deleted after they have been
+     * read, e.g. the project artifact.
+     *
+     * @param file The zip archive.
+     * @return A zip file that is read with positional reads and releases the file when it is closed.
+     * @throws ZipException If the file is not a zip archive or uses unsupported features.
+     * @throws IOException  If the file could not be read.
+     */
+    public static MappedZipFile openUnmapped(File file) throws IOException {
+        return open(file, Long.MAX_VALUE);
+    }
+
+    @VisibleForTesting
+    static MappedZipFile open(File file, long mappingThreshold) throws IOException {
+        checkNotNull(file, "file is null");
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException(format("%s is too large to be mapped (%d bytes)", file, size));
+            }
+            if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+                throw new ZipException(format("%s is not a zip file", file));
+            }
+            if (size < mappingThreshold) {
+                return new MappedZipFile(file, size, null, channel);
+            }
+            // the mapping stays valid after the channel has been closed.
+            MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            channel.close();
+            return new MappedZipFile(file, size, mappedBuffer.order(ByteOrder.LITTLE_ENDIAN), null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedZipFile(File file, long size, @Nullable ByteBuffer buffer, @Nullable FileChannel channel) throws ZipException {
+        this.file = file;
+        this.size = size;
+        this.buffer = buffer;
+        this.channel = channel;
+        this.entries = readCentralDirectory();
+    }
+
+    /**
+     * Returns all entries in the order of the central directory.
+     */
+    public ImmutableList<MappedZipEntry> entries() {
+        checkState(!closed, "%s is closed", file);
+        return entries;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if the archive is memory mapped.
+     */
+    public boolean isMapped() {
+        return buffer != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        // a mapped buffer can not be released explicitly, it is unmapped when it is garbage collected.
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    void checkOpen() throws ZipException {
+        if (closed) {
+            throw new ZipException(format("%s is closed", file));
+        }
+    }
+
+    // returns a little endian view of the mapped region or a buffer with the region read from the archive.
+    ByteBuffer slice(long offset, long length) throws ZipException {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new ZipException(format("%s: region at %d (%d bytes) is outside the archive", file, offset, length));
+        }
+        if (buffer != null) {
+            return buffer.duplicate()
+                    .position((int) offset)
+                    .limit((int) (offset + length))
+                    .slice()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        ByteBuffer result = ByteBuffer.allocate((int) length);
+        try {
+            while (result.hasRemaining()) {
+                if (channel.read(result, offset + result.position()) < 0) {
+                    throw new ZipException(format("%s: unexpected end of archive at %d", file, offset + result.position()));
+                }
+            }
+        } catch (ZipException e) {
+            throw e;
+        } catch (IOException e) {
+            ZipException zipException = new ZipException(format("%s: could not read region at %d (%d bytes)", file, offset, length));
+            zipException.initCause(e);
+            throw zipException;
+        }
+        return result.flip().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ImmutableList<MappedZipEntry> readCentralDirectory() throws ZipException {
+        // the end of the archive, it contains the end of central directory record and the zip64 locator.
+        long tailOffset = Math.max(0, size - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE - ZIP64_LOCATOR_SIZE);
+        ByteBuffer tail = slice(tailOffset, size - tailOffset);
+        int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+
+        long entryCount = Short.toUnsignedInt(tail.getShort(endOfCentralDirectory + 10));
+        long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectory + 12));
+        long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectory + 16));
+
+        if (entryCount == 0xffff || centralDirectorySize == 0xffffffffL || centralDirectoryOffset == 0xffffffffL) {
+            // zip64 archive, the real values are in the zip64 end of central directory record.
+            int locator = endOfCentralDirectory - ZIP64_LOCATOR_SIZE;
+            if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new ZipException(format("%s: missing zip64 end of central directory locator", file));
+            }
+            long zip64Record = tail.getLong(locator + 8);
+            if (zip64Record < 0 || zip64Record > size - 56) {
+                throw new ZipException(format("%s: invalid zip64 end of central directory record", file));
+            }
+            ByteBuffer zip64 = slice(zip64Record, 56);
+            if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new ZipException(format("%s: invalid zip64 end of central directory record", file));
+            }
+            entryCount = zip64.getLong(32);
+            centralDirectorySize = zip64.getLong(40);
+            centralDirectoryOffset = zip64.getLong(48);
+        }
+
+        ByteBuffer centralDirectory = slice(centralDirectoryOffset, centralDirectorySize);
+        ImmutableList.Builder<MappedZipEntry> builder = ImmutableList.builderWithExpectedSize((int) Math.min(entryCount, 1 << 16));
+
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_SIZE > centralDirectory.limit() || centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException(format("%s: invalid central directory header for entry %d", file, i));
+            }
+
+            int flags = Short.toUnsignedInt(centralDirectory.getShort(position + 8));
+            int method = Short.toUnsignedInt(centralDirectory.getShort(position + 10));
+            long dosTime = Integer.toUnsignedLong(centralDirectory.getInt(position + 12));
+            int crc = centralDirectory.getInt(position + 16);
+            long compressedSize = Integer.toUnsignedLong(centralDirectory.getInt(position + 20));
+            long size = Integer.toUnsignedLong(centralDirectory.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(position + 42));
+
+            int entryLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            if (position + entryLength > centralDirectory.limit()) {
+                throw new ZipException(format("%s: central directory entry %d exceeds the central directory", file, i));
+            }
+
+            if ((flags & 0x0001) != 0) {
+                throw new ZipException(format("%s: encrypted entries are not supported", file));
+            }
+            if (method != MappedZipEntry.STORED && method != MappedZipEntry.DEFLATED) {
+                throw new ZipException(format("%s: compression method %d is not supported", file, method));
+            }
+
+            String name = new String(getBytes(centralDirectory, position + CENTRAL_HEADER_SIZE, nameLength), StandardCharsets.UTF_8);
+            byte[] extra = getBytes(centralDirectory, position + CENTRAL_HEADER_SIZE + nameLength, extraLength);
+
+            ByteBuffer extraBuffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+            if (size == 0xffffffffL || compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                int zip64 = findExtraField(extraBuffer, EXTRA_ZIP64);
+                if (zip64 < 0) {
+                    throw new ZipException(format("%s: entry '%s' is missing the zip64 extra field", file, name));
+                }
+                int fieldEnd = zip64 + 4 + Short.toUnsignedInt(extraBuffer.getShort(zip64 + 2));
+                int fieldPosition = zip64 + 4;
+                if (size == 0xffffffffL && fieldPosition + 8 <= fieldEnd) {
+                    size = extraBuffer.getLong(fieldPosition);
+                    fieldPosition += 8;
+                }
+                if (compressedSize == 0xffffffffL && fieldPosition + 8 <= fieldEnd) {
+                    compressedSize = extraBuffer.getLong(fieldPosition);
+                    fieldPosition += 8;
+                }
+                if (localHeaderOffset == 0xffffffffL && fieldPosition + 8 <= fieldEnd) {
+                    localHeaderOffset = extraBuffer.getLong(fieldPosition);
+                }
+            }
+
+            if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE) {
+                throw new ZipException(format("%s: entry '%s' is too large", file, name));
+            }
+
+            builder.add(new MappedZipEntry(this, name, method, crc, (int) compressedSize, (int) size,
+                    ZipTime.getTime(dosTime, extraBuffer), localHeaderOffset));
+
+            position += entryLength;
+        }
+
+        return builder.build();
+    }
+
+    // returns the position of the end of central directory record in the tail of the archive.
+    private int findEndOfCentralDirectory(ByteBuffer tail) throws ZipException {
+        int limit = Math.max(0, tail.capacity() - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+        for (int position = tail.capacity() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= limit; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                    && position + END_OF_CENTRAL_DIRECTORY_SIZE + Short.toUnsignedInt(tail.getShort(position + 20)) == tail.capacity()) {
+                return position;
+            }
+        }
+        throw new ZipException(format("%s: end of central directory not found", file));
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int offset, int length) {
+        byte[] result = new byte[length];
+        buffer.duplicate().position(offset).get(result);
+        return result;
+    }
+
+    // returns the position of the extra field header with the given id or -1 if the field does not exist.
+    static int findExtraField(ByteBuffer extra, int id) {
+        int position = 0;
+        while (position + 4 <= extra.limit()) {
+            int fieldId = Short.toUnsignedInt(extra.getShort(position));
+            int fieldSize = Short.toUnsignedInt(extra.getShort(position + 2));
+            if (position + 4 + fieldSize > extra.limit()) {
+                return -1;
+            }
+            if (fieldId == id) {
+                return position;
+            }
+            position += 4 + fieldSize;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", MappedZipFile.class.getSimpleName() + "[", "]")
+                .add("file=" + file)
+                .add("entries=" + entries.size())
+                .add("mapped=" + isMapped())
+                .add("closed=" + closed)
+                .toString();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import java.util.StringJoiner;
+
+/**
+ * Compressed entry data that was written to a {@link ZipEntrySpool}.
+ */
+public final class SpooledZipEntry {
+
+    private final int method;
+    private final int crc;
+    private final int size;
+    private final long offset;
+    private final int compressedSize;
+
+    SpooledZipEntry(int method, int crc, int size, long offset, int compressedSize) {
+        this.method = method;
+        this.crc = crc;
+        this.size = size;
+        this.offset = offset;
+        this.compressedSize = compressedSize;
+    }
+
+    public int getMethod() {
+        return method;
+    }
+
+    public int getCrc() {
+        return crc;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCompressedSize() {
+        return compressedSize;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", SpooledZipEntry.class.getSimpleName() + "[", "]")
+                .add("method=" + method)
+                .add("size=" + size)
+                .add("offset=" + offset)
+                .add("compressedSize=" + compressedSize)
+                .toString();
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Writes a jar archive. In addition to regular entries, this writer accepts entries whose data has already been compressed and writes it unchanged. This
+ * allows copying entries from a {@link MappedZipFile} without inflating and deflating them again.
+ * <p>
+ * The archive layout follows {@link java.util.jar.JarOutputStream}: names are UTF-8 encoded, the first entry carries the jar magic extra field and
+ * modification times outside of the DOS time range are written as extended timestamps. Sizes and checksums are always known up front, so no data
+ * descriptors are written. Unlike {@link java.util.jar.JarOutputStream}, directory entries are stored, not deflated.
+ * <p>
+ * Entries are held in memory, so the size of a single entry is limited to 2GB. Larger entries are rejected with a {@link ZipException}. The archive
+ * itself may be larger, zip64 records are written as needed.
+ */
+public final class ZipArchiveWriter implements Closeable {
+
+    private static final int JAR_MAGIC = 0xcafe;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final CountingOutputStream out;
+    private final ZipCompressor compressor = new ZipCompressor();
+    private final List<CentralDirectoryEntry> centralDirectory = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+    private final ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] copyBuffer;
+
+    private boolean closed = false;
+
+    public ZipArchiveWriter(OutputStream out) {
+        checkNotNull(out, "out is null");
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, COPY_BUFFER_SIZE));
+    }
+
+    /**
+     * Writes an entry. Directory entries (names ending in '/') are stored, all other entries are deflated.
+     *
+     * @param name    The entry name.
+     * @param time    The modification time in milliseconds.
+     * @param content The uncompressed entry content.
+     */
+    public void writeEntry(String name, long time, byte[] content) throws IOException {
+        checkNotNull(content, "content is null");
+
+        if (name.endsWith("/")) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            writeCompressedEntry(name, time, MappedZipEntry.STORED, (int) crc.getValue(), content.length, ByteBuffer.wrap(content));
+        } else {
+            compressor.compress(content);
+            writeCompressedEntry(name, time, MappedZipEntry.DEFLATED, compressor.getCrc(), content.length, compressor.getCompressedData());
+        }
+    }
+
+    /**
+     * Copies the entry data from a mapped zip file without decompressing it.
+     *
+     * @param name  The entry name. This may be different from the name of the source entry.
+     * @param time  The modification time in milliseconds.
+     * @param entry The source entry.
+     */
+    public void writeRawEntry(String name, long time, MappedZipEntry entry) throws IOException {
+        checkNotNull(entry, "entry is null");
+
+        writeCompressedEntry(name, time, entry.getMethod(), entry.getCrc(), entry.getSize(), entry.getRawData());
+    }
+
+    /**
+     * Writes an entry whose data has been compressed into a spool.
+     *
+     * @param name  The entry name.
+     * @param time  The modification time in milliseconds.
+     * @param spool The spool that holds the entry data.
+     * @param entry The spooled entry.
+     */
+    public void writeSpooledEntry(String name, long time, ZipEntrySpool spool, SpooledZipEntry entry) throws IOException {
+        checkNotNull(spool, "spool is null");
+        checkNotNull(entry, "entry is null");
+
+        writeCompressedEntry(name, time, entry.getMethod(), entry.getCrc(), entry.getSize(), spool.getRawData(entry));
+    }
+
+    /**
+     * Writes an entry whose data is already compressed with the given method.
+     *
+     * @param name           The entry name.
+     * @param time           The modification time in milliseconds.
+     * @param method         The compression method, {@link MappedZipEntry#STORED} or {@link MappedZipEntry#DEFLATED}.
+     * @param crc            The CRC-32 of the uncompressed data.
+     * @param size           The size of the uncompressed data.
+     * @param compressedData The compressed data. All remaining bytes of the buffer are written.
+     */
+    public void writeCompressedEntry(String name, long time, int method, int crc, int size, ByteBuffer compressedData) throws IOException {
+        checkNotNull(name, "name is null");
+        checkNotNull(compressedData, "compressedData is null");
+        checkArgument(method == MappedZipEntry.STORED || method == MappedZipEntry.DEFLATED, "unsupported compression method %s", method);
+        checkState(!closed, "writer is closed");
+
+        if (size < 0) {
+            throw new ZipException(format("entry '%s' is too large, entries of 2GB or more are not supported", name));
+        }
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int compressedSize = compressedData.remaining();
+        boolean jarMagic = centralDirectory.isEmpty();
+        boolean extendedTimestamp = ZipTime.needsExtendedTimestamp(time);
+        int dosTime = ZipTime.javaToDosTime(time);
+
+        CentralDirectoryEntry entry = new CentralDirectoryEntry(nameBytes, method, dosTime, time, crc, compressedSize, size, out.getCount(),
+                jarMagic, extendedTimestamp);
+
+        header.clear();
+        header.putInt(MappedZipFile.LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) entry.getVersion());
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) method);
+        header.putInt(dosTime);
+        header.putInt(crc);
+        header.putInt(compressedSize);
+        header.putInt(size);
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) entry.getExtraLength());
+        writeHeader();
+        out.write(nameBytes);
+        writeExtra(entry);
+
+        writeBuffer(compressedData);
+
+        centralDirectory.add(entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            long centralDirectoryOffset = out.getCount();
+            boolean zip64 = centralDirectory.size() >= 0xffff || centralDirectoryOffset >= 0xffffffffL;
+
+            for (CentralDirectoryEntry entry : centralDirectory) {
+                boolean zip64Offset = entry.localHeaderOffset >= 0xffffffffL;
+
+                header.clear();
+                header.putInt(MappedZipFile.CENTRAL_HEADER_SIGNATURE);
+                header.putShort((short) (zip64Offset ? VERSION_ZIP64 : entry.getVersion()));
+                header.putShort((short) (zip64Offset ? VERSION_ZIP64 : entry.getVersion()));
+                header.putShort((short) FLAG_UTF8);
+                header.putShort((short) entry.method);
+                header.putInt(entry.dosTime);
+                header.putInt(entry.crc);
+                header.putInt(entry.compressedSize);
+                header.putInt(entry.size);
+                header.putShort((short) entry.name.length);
+                header.putShort((short) (entry.getExtraLength() + (zip64Offset ? 12 : 0)));
+                header.putShort((short) 0); // comment length
+                header.putShort((short) 0); // disk number
+                header.putShort((short) 0); // internal attributes
+                header.putInt(0); // external attributes
+                header.putInt(zip64Offset ? 0xffffffff : (int) entry.localHeaderOffset);
+                writeHeader();
+                out.write(entry.name);
+                writeExtra(entry);
+
+                if (zip64Offset) {
+                    header.clear();
+                    header.putShort((short) MappedZipFile.EXTRA_ZIP64);
+                    header.putShort((short) 8);
+                    header.putLong(entry.localHeaderOffset);
+                    writeHeader();
+                }
+            }
+
+            long centralDirectorySize = out.getCount() - centralDirectoryOffset;
+            zip64 |= centralDirectorySize >= 0xffffffffL;
+
+            if (zip64) {
+                long zip64EndOfCentralDirectoryOffset = out.getCount();
+
+                header.clear();
+                header.putInt(MappedZipFile.ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+                header.putLong(44); // size of the remaining record
+                header.putShort((short) VERSION_ZIP64);
+                header.putShort((short) VERSION_ZIP64);
+                header.putInt(0); // disk number
+                header.putInt(0); // disk with the central directory
+                header.putLong(centralDirectory.size());
+                header.putLong(centralDirectory.size());
+                header.putLong(centralDirectorySize);
+                header.putLong(centralDirectoryOffset);
+                writeHeader();
+
+                header.clear();
+                header.putInt(MappedZipFile.ZIP64_LOCATOR_SIGNATURE);
+                header.putInt(0); // disk with the zip64 end of central directory record
+                header.putLong(zip64EndOfCentralDirectoryOffset);
+                header.putInt(1); // total number of disks
+                writeHeader();
+            }
+
+            header.clear();
+            header.putInt(MappedZipFile.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            header.putShort((short) 0); // disk number
+            header.putShort((short) 0); // disk with the central directory
+            header.putShort((short) (zip64 ? 0xffff : centralDirectory.size()));
+            header.putShort((short) (zip64 ? 0xffff : centralDirectory.size()));
+            header.putInt(zip64 ? 0xffffffff : (int) centralDirectorySize);
+            header.putInt(zip64 ? 0xffffffff : (int) centralDirectoryOffset);
+            header.putShort((short) 0); // comment length
+            writeHeader();
+        } finally {
+            compressor.end();
+            out.close();
+        }
+    }
+
+    private void writeExtra(CentralDirectoryEntry entry) throws IOException {
+        header.clear();
+        if (entry.jarMagic) {
+            header.putShort((short) JAR_MAGIC);
+            header.putShort((short) 0);
+        }
+        if (entry.extendedTimestamp) {
+            header.putShort((short) ZipTime.EXTRA_EXTENDED_TIMESTAMP);
+            header.putShort((short) 5);
+            header.put((byte) 0x01); // modification time present
+            header.putInt((int) Math.floorDiv(entry.time, 1000L));
+        }
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        out.write(header.array(), 0, header.position());
+    }
+
+    private void writeBuffer(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            if (copyBuffer == null) {
+                copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            ByteBuffer source = buffer.duplicate();
+            while (source.hasRemaining()) {
+                int count = Math.min(source.remaining(), copyBuffer.length);
+                source.get(copyBuffer, 0, count);
+                out.write(copyBuffer, 0, count);
+            }
+        }
+    }
+
+    private static final class CentralDirectoryEntry {
+
+        private final byte[] name;
+        private final int method;
+        private final int dosTime;
+        private final long time;
+        private final int crc;
+        private final int compressedSize;
+        private final int size;
+        private final long localHeaderOffset;
+        private final boolean jarMagic;
+        private final boolean extendedTimestamp;
+
+        private CentralDirectoryEntry(byte[] name, int method, int dosTime, long time, int crc, int compressedSize, int size, long localHeaderOffset,
+                boolean jarMagic, boolean extendedTimestamp) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.time = time;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.jarMagic = jarMagic;
+            this.extendedTimestamp = extendedTimestamp;
+        }
+
+        private int getVersion() {
+            return method == MappedZipEntry.STORED ? VERSION_STORED : VERSION_DEFLATED;
+        }
+
+        private int getExtraLength() {
+            return (jarMagic ? 4 : 0) + (extendedTimestamp ? 9 : 0);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates entry content into a reusable buffer. Not thread safe.
+ */
+final class ZipCompressor {
+
+    private final Deflater deflater;
+    private final CRC32 crc32 = new CRC32();
+
+    private byte[] buffer = new byte[64 * 1024];
+    private ByteBuffer data;
+    private int method;
+    private int length;
+    private int crc;
+
+    ZipCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    ZipCompressor(int level) {
+        this.deflater = new Deflater(level, true);
+    }
+
+    /**
+     * Compresses the content. The result is available from {@link #getMethod()}, {@link #getCompressedData()} and {@link #getCrc()} until the next call.
+     */
+    void compress(byte[] content) {
+        computeCrc(content);
+
+        deflater.reset();
+        deflater.setInput(content);
+        deflater.finish();
+
+        length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        method = MappedZipEntry.DEFLATED;
+        data = ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    /**
+     * Stores the content without compression. The result is available from {@link #getMethod()}, {@link #getCompressedData()} and {@link #getCrc()} until
+     * the next call.
+     */
+    void store(byte[] content) {
+        computeCrc(content);
+
+        method = MappedZipEntry.STORED;
+        data = ByteBuffer.wrap(content);
+    }
+
+    private void computeCrc(byte[] content) {
+        crc32.reset();
+        crc32.update(content);
+        crc = (int) crc32.getValue();
+    }
+
+    int getMethod() {
+        return method;
+    }
+
+    int getCrc() {
+        return crc;
+    }
+
+    ByteBuffer getCompressedData() {
+        return data.duplicate();
+    }
+
+    void end() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import org.basepom.inline.transformer.util.WorkerPool;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Holds compressed entry data in a temporary file until the output jar is written. This allows the output to be assembled in any order without keeping
+ * the content of all entries in memory. The temporary file is deleted when the spool is closed.
+ * <p>
+ * Entries can be compressed on multiple threads. Each entry is deflated on its own, so the compressed data of an entry does not depend on the number of
+ * threads or the order in which entries are compressed.
+ */
+public final class ZipEntrySpool implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path spoolFile;
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final Executor executor;
+    // only present if the spool owns its worker threads.
+    private final ExecutorService executorService;
+    private final CompressionPolicy compressionPolicy;
+    private final Queue<ZipCompressor> compressors = new ConcurrentLinkedQueue<>();
+
+    // guarded by this
+    private long position = 0;
+    private boolean flushed = true;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new spool that compresses all entries on the calling thread.
+     *
+     * @param directory The directory for the temporary file.
+     */
+    public ZipEntrySpool(Path directory) throws IOException {
+        this(directory, 1, CompressionPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a new spool.
+     *
+     * @param directory         The directory for the temporary file.
+     * @param threads           Number of threads used to compress entries. If less than two, all entries are compressed on the calling thread.
+     * @param compressionPolicy Controls how entries are compressed.
+     */
+    public ZipEntrySpool(Path directory, int threads, CompressionPolicy compressionPolicy) throws IOException {
+        this(directory, compressionPolicy, threads > 1 ? WorkerPool.create(threads) : null, true);
+    }
+
+    /**
+     * Creates a new spool that compresses entries with an executor that may be shared with other work, e.g. a {@link WorkerPool} that also rewrites
+     * classes. The spool does not shut down the executor.
+     *
+     * @param directory         The directory for the temporary file.
+     * @param compressionPolicy Controls how entries are compressed.
+     * @param executor          Compresses the entries. If null, all entries are compressed on the calling thread.
+     */
+    public ZipEntrySpool(Path directory, CompressionPolicy compressionPolicy, @Nullable Executor executor) throws IOException {
+        this(directory, compressionPolicy, executor, false);
+    }
+
+    private ZipEntrySpool(Path directory, CompressionPolicy compressionPolicy, @Nullable Executor executor, boolean ownsExecutor) throws IOException {
+        checkNotNull(directory, "directory is null");
+        this.compressionPolicy = checkNotNull(compressionPolicy, "compressionPolicy is null");
+        this.executor = executor;
+        this.executorService = ownsExecutor ? (ExecutorService) executor : null;
+
+        try {
+            Files.createDirectories(directory);
+            this.spoolFile = Files.createTempFile(directory, "inline-", ".spool");
+            this.channel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+            throw e;
+        }
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the compression policy for this spool.
+     */
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    /**
+     * Compresses the content and appends it to the spool.
+     *
+     * @param name    The entry name. Used to decide whether the entry is compressed.
+     * @param content The uncompressed entry content.
+     * @return The location of the compressed data in the spool.
+     */
+    public SpooledZipEntry add(String name, byte[] content) throws IOException {
+        checkNotNull(name, "name is null");
+        checkNotNull(content, "content is null");
+        checkState(!closed, "spool is closed");
+
+        return compress(name, content);
+    }
+
+    /**
+     * Compresses the content and appends it to the spool. If the spool uses multiple threads, the content is retrieved and compressed asynchronously.
+     *
+     * @param name    The entry name. Used to decide whether the entry is compressed.
+     * @param content Returns the uncompressed entry content.
+     * @return The location of the compressed data in the spool. Use {@link #getEntry(Future)} to retrieve it.
+     */
+    public Future<SpooledZipEntry> submit(String name, Callable<byte[]> content) {
+        checkNotNull(name, "name is null");
+        checkNotNull(content, "content is null");
+        checkState(!closed, "spool is closed");
+
+        FutureTask<SpooledZipEntry> task = new FutureTask<>(() -> {
+            try {
+                return compress(name, content.call());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+
+        if (executor != null) {
+            executor.execute(task);
+        } else {
+            task.run();
+        }
+        return task;
+    }
+
+    /**
+     * Waits for an entry that was submitted to the spool.
+     */
+    public static SpooledZipEntry getEntry(Future<SpooledZipEntry> future) throws IOException {
+        checkNotNull(future, "future is null");
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing entry", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private SpooledZipEntry compress(String name, byte[] content) throws IOException {
+        ZipCompressor compressor = compressors.poll();
+        if (compressor == null) {
+            compressor = new ZipCompressor(compressionPolicy.getLevel());
+        }
+
+        try {
+            if (compressionPolicy.isStored(name)) {
+                compressor.store(content);
+            } else {
+                compressor.compress(content);
+                if (compressionPolicy.isStored(content.length, compressor.getCompressedData().remaining())) {
+                    compressor.store(content);
+                }
+            }
+
+            ByteBuffer compressedData = compressor.getCompressedData();
+            int compressedSize = compressedData.remaining();
+
+            synchronized (this) {
+                checkState(!closed, "spool is closed");
+                out.write(compressedData.array(), compressedData.arrayOffset() + compressedData.position(), compressedSize);
+                flushed = false;
+
+                SpooledZipEntry entry = new SpooledZipEntry(compressor.getMethod(), compressor.getCrc(), content.length, position, compressedSize);
+                position += compressedSize;
+                return entry;
+            }
+        } finally {
+            compressors.add(compressor);
+        }
+    }
+
+    /**
+     * Returns the compressed data for a spooled entry. The buffer is only valid until the next call to this method.
+     */
+    public synchronized ByteBuffer getRawData(SpooledZipEntry entry) throws IOException {
+        checkNotNull(entry, "entry is null");
+        checkState(!closed, "spool is closed");
+
+        if (!flushed) {
+            out.flush();
+            flushed = true;
+        }
+
+        if (readBuffer.capacity() < entry.getCompressedSize()) {
+            readBuffer = ByteBuffer.allocate(entry.getCompressedSize());
+        }
+        readBuffer.clear().limit(entry.getCompressedSize());
+
+        long readPosition = entry.getOffset();
+        while (readBuffer.hasRemaining()) {
+            int count = channel.read(readBuffer, readPosition);
+            if (count < 0) {
+                throw new EOFException(format("Spool file %s is truncated", spoolFile));
+            }
+            readPosition += count;
+        }
+        return readBuffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (executorService != null) {
+            // entries that are still waiting are no longer needed.
+            executorService.shutdownNow();
+            try {
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            closed = true;
+
+            try {
+                ZipCompressor compressor;
+                while ((compressor = compressors.poll()) != null) {
+                    compressor.end();
+                }
+                // closing the stream closes the channel, which deletes the spool file.
+                out.close();
+            } finally {
+                Files.deleteIfExists(spoolFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zip timestamp conversion. Follows the rules of {@link java.util.zip.ZipEntry#getTime()} and {@link java.util.zip.ZipEntry#setTime(long)} so that
+ * entries read by {@link MappedZipFile} and written by {@link ZipArchiveWriter} use the same modification times as the JDK zip implementation.
+ */
+final class ZipTime {
+
+    static final int EXTRA_NTFS = 0x000a;
+    static final int EXTRA_EXTENDED_TIMESTAMP = 0x5455;
+
+    private static final long WINDOWS_EPOCH_IN_MICROSECONDS = -11644473600000000L;
+    private static final long WINDOWS_TIME_NOT_AVAILABLE = Long.MIN_VALUE;
+
+    private static final long DOSTIME_BEFORE_1980 = (1 << 21) | (1 << 16);
+    private static final long UPPER_DOSTIME_BOUND = 128L * 365 * 24 * 60 * 60 * 1000;
+
+    private ZipTime() {
+        throw new AssertionError("do not instantiate");
+    }
+
+    /**
+     * Returns the modification time in milliseconds from a central directory entry.
+     *
+     * @param dosTime The DOS date and time from the central directory.
+     * @param extra   The central directory extra data.
+     * @return The modification time in milliseconds since the epoch.
+     */
+    static long getTime(long dosTime, ByteBuffer extra) {
+        long time = Long.MIN_VALUE;
+
+        // same as ZipEntry#setExtra0, the last timestamp field wins.
+        int position = 0;
+        while (position + 4 <= extra.limit()) {
+            int fieldId = Short.toUnsignedInt(extra.getShort(position));
+            int fieldSize = Short.toUnsignedInt(extra.getShort(position + 2));
+            int fieldStart = position + 4;
+            if (fieldStart + fieldSize > extra.limit()) {
+                break;
+            }
+            switch (fieldId) {
+                case EXTRA_NTFS:
+                    if (fieldSize >= 32
+                            && Short.toUnsignedInt(extra.getShort(fieldStart + 4)) == 0x0001
+                            && Short.toUnsignedInt(extra.getShort(fieldStart + 6)) == 24) {
+                        long windowsTime = extra.getLong(fieldStart + 8);
+                        if (windowsTime != WINDOWS_TIME_NOT_AVAILABLE) {
+                            time = TimeUnit.MICROSECONDS.toMillis(windowsTime / 10 + WINDOWS_EPOCH_IN_MICROSECONDS);
+                        }
+                    }
+                    break;
+                case EXTRA_EXTENDED_TIMESTAMP:
+                    if (fieldSize >= 5 && (extra.get(fieldStart) & 0x01) != 0) {
+                        time = TimeUnit.SECONDS.toMillis(extra.getInt(fieldStart + 1));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            position = fieldStart + fieldSize;
+        }
+
+        return time != Long.MIN_VALUE ? time : extendedDosToJavaTime(dosTime);
+    }
+
+    /**
+     * Returns the DOS date and time for a modification time, same as {@link java.util.zip.ZipEntry#setTime(long)}.
+     */
+    static int javaToDosTime(long time) {
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (localDateTime.getYear() < 1980) {
+            return (int) DOSTIME_BEFORE_1980;
+        }
+        return (localDateTime.getYear() - 1980) << 25
+                | localDateTime.getMonthValue() << 21
+                | localDateTime.getDayOfMonth() << 16
+                | localDateTime.getHour() << 11
+                | localDateTime.getMinute() << 5
+                | localDateTime.getSecond() >> 1;
+    }
+
+    /**
+     * Returns true if a modification time can not be represented as DOS time and must be written as an extended timestamp.
+     */
+    static boolean needsExtendedTimestamp(long time) {
+        if (Integer.toUnsignedLong(javaToDosTime(time)) != DOSTIME_BEFORE_1980 && time <= UPPER_DOSTIME_BOUND) {
+            return false;
+        }
+        int year = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).getYear();
+        return year < 1980 || year > 2099;
+    }
+
+    static long extendedDosToJavaTime(long extendedDosTime) {
+        return dosToJavaTime(extendedDosTime) + (extendedDosTime >> 32);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long dosToJavaTime(long dosTime) {
+        int year = (int) (((dosTime >> 25) & 0x7f) + 1980);
+        int month = (int) ((dosTime >> 21) & 0x0f);
+        int day = (int) ((dosTime >> 16) & 0x1f);
+        int hour = (int) ((dosTime >> 11) & 0x1f);
+        int minute = (int) ((dosTime >> 5) & 0x3f);
+        int second = (int) ((dosTime << 1) & 0x3e);
+
+        if (month > 0 && month < 13 && day > 0 && hour < 24 && minute < 60 && second < 60) {
+            try {
+                LocalDateTime localDateTime = LocalDateTime.of(year, month, day, hour, minute, second);
+                return TimeUnit.SECONDS.toMillis(localDateTime.toEpochSecond(ZoneId.systemDefault().getRules().getOffset(localDateTime)));
+            } catch (DateTimeException e) {
+                // fall through, handled by the lenient conversion below.
+            }
+        }
+        // out of range values are normalized, same as the JDK does.
+        return new java.util.Date(year - 1900, month - 1, day, hour, minute, second).getTime();
+    }
+}
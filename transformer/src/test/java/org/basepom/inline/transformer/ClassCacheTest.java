@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ClassCacheTest {
+
+    private static final byte[] ORIGINAL = "original".getBytes(UTF_8);
+    private static final byte[] REWRITTEN = "rewritten".getBytes(UTF_8);
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    void testRoundTrip() {
+        ClassCache classCache = new ClassCache(cacheDirectory, () -> "rules");
+        String key = classCache.getKey(ORIGINAL);
+
+        assertNull(classCache.getClassName(key));
+        assertNull(classCache.get(key));
+
+        classCache.put(key, "foo/Bar", REWRITTEN);
+
+        ClassCache otherCache = new ClassCache(cacheDirectory, () -> "rules");
+        assertEquals(key, otherCache.getKey(ORIGINAL));
+        assertEquals("foo/Bar", otherCache.getClassName(key));
+        assertArrayEquals(REWRITTEN, otherCache.get(key));
+    }
+
+    @Test
+    void testRulesChangeKey() {
+        ClassCache classCache = new ClassCache(cacheDirectory, () -> "rules");
+        ClassCache otherCache = new ClassCache(cacheDirectory, () -> "other rules");
+
+        assertNotEquals(classCache.getKey(ORIGINAL), otherCache.getKey(ORIGINAL));
+    }
+}
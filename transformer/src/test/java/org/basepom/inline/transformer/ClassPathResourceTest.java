@@ -14,7 +14,11 @@
 package org.basepom.inline.transformer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.jupiter.api.Test;
 
 public class ClassPathResourceTest {
@@ -42,4 +46,17 @@ public class ClassPathResourceTest {
         ClassPathResource resource = ClassPathResource.forDirectory("foo/", 0L);
         assertEquals("foo/", resource.getName());
     }
+
+    @Test
+    void testTags() {
+        ClassPathResource resource = ClassPathResource.forTesting("Baz.class", null, ClassPathTag.CLASS, ClassPathTag.FILE);
+        assertEquals(ImmutableSet.of(ClassPathTag.CLASS, ClassPathTag.FILE), resource.getTags());
+        assertSame(resource.getTags(), resource.withName("Foo.class").getTags());
+
+        assertTrue(resource.containsTags(ClassPathTag.CLASS));
+        assertTrue(resource.containsTags(ClassPathTag.FILE, ClassPathTag.CLASS));
+        assertTrue(resource.containsTags());
+        assertFalse(resource.containsTags(ClassPathTag.RESOURCE));
+        assertFalse(resource.containsTags(ClassPathTag.CLASS, ClassPathTag.ROOT_JAR));
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.basepom.inline.transformer.JarProcessor.Phase;
+import org.basepom.inline.transformer.processor.DirectoryFilterProcessor;
+import org.basepom.inline.transformer.processor.DuplicateDiscardProcessor;
+import org.basepom.inline.transformer.processor.JarWriterProcessor;
+import org.basepom.inline.transformer.processor.RemapperProcessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+public class JarProcessorTest {
+
+    @Test
+    void testPhases() {
+        assertEquals(ImmutableSet.of(Phase.PROCESS), new JarWriterProcessor(resource -> {}).getPhases());
+        assertEquals(ImmutableSet.of(Phase.PRE_SCAN), new RemapperProcessor().getPhases());
+        assertEquals(ImmutableSet.of(Phase.PROCESS), new DuplicateDiscardProcessor(false).getPhases());
+        assertEquals(ImmutableSet.copyOf(Phase.values()), new DirectoryFilterProcessor().getPhases());
+    }
+
+    @Test
+    void testPhaseChains() throws Exception {
+        List<String> calls = new ArrayList<>();
+        JarProcessor.Holder holder = new JarProcessor.Holder(new RecordingProcessor(calls), new DiscardingProcessor(calls));
+
+        ClassPathResource resource = ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE);
+        assertSame(resource, holder.preScan(resource).orElseThrow());
+        assertSame(resource, holder.scan(resource).orElseThrow());
+        assertTrue(holder.process(resource).isEmpty());
+
+        assertEquals(List.of("record scan", "record process", "discard process"), calls);
+    }
+
+    @Test
+    void testInterestRouting() throws Exception {
+        List<String> calls = new ArrayList<>();
+        JarProcessor.Holder holder = new JarProcessor.Holder(new MetaInfProcessor(calls), new RecordingProcessor(calls));
+
+        ClassPathResource classResource = ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE);
+        ClassPathResource metaInfResource = ClassPathResource.forTesting("META-INF/foo.txt", null, ClassPathTag.RESOURCE, ClassPathTag.FILE);
+        ClassPathResource metaInfClass = ClassPathResource.forTesting("META-INF/Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE);
+        holder.scan(classResource);
+        holder.scan(metaInfResource);
+        holder.scan(metaInfClass);
+
+        assertEquals(List.of("record scan", "meta-inf META-INF/foo.txt", "record scan", "record scan"), calls);
+    }
+
+    private static final class MetaInfProcessor implements JarProcessor {
+
+        private final List<String> calls;
+
+        private MetaInfProcessor(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public ClassPathResource scan(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+            calls.add("meta-inf " + classPathResource.getName());
+            return chain.next(classPathResource);
+        }
+
+        @Override
+        public ResourceInterest getInterest(Phase phase) {
+            return ResourceInterest.tagged(ClassPathTag.RESOURCE).withPathPrefixes("META-INF/");
+        }
+
+        @Override
+        public int getPriority() {
+            return 5;
+        }
+    }
+
+    private static final class RecordingProcessor implements JarProcessor {
+
+        private final List<String> calls;
+
+        private RecordingProcessor(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public ClassPathResource scan(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+            calls.add("record scan");
+            return chain.next(classPathResource);
+        }
+
+        @Override
+        public ClassPathResource process(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+            calls.add("record process");
+            return chain.next(classPathResource);
+        }
+
+        @Override
+        public int getPriority() {
+            return 10;
+        }
+    }
+
+    private static final class DiscardingProcessor implements JarProcessor {
+
+        private final List<String> calls;
+
+        private DiscardingProcessor(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public ClassPathResource process(ClassPathResource classPathResource, Chain<ClassPathResource> chain) {
+            calls.add("discard process");
+            return null;
+        }
+
+        @Override
+        public int getPriority() {
+            return 20;
+        }
+    }
+}
@@ -15,20 +15,35 @@
 package org.basepom.inline.transformer;
 
 import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.basepom.inline.transformer.util.WorkerPool;
+
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
 import de.softwareforge.testing.maven.MavenArtifactLoader;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class JdbiRelocationTest {
 
@@ -68,6 +83,125 @@ public class JdbiRelocationTest {
         }
     }
 
+    @Test
+    public void testParallelRelocation() throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+
+        File jdbi = loader.getArtifactFile("org.jdbi", "jdbi3-core", "3.27.0");
+        File antlr = loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2");
+
+        Map<String, ClassPathResource> sequential = relocate(jdbi, antlr, 1, null);
+        Map<String, ClassPathResource> parallel = relocate(jdbi, antlr, 4, null);
+
+        assertSameContent(sequential, parallel);
+    }
+
+    @Test
+    public void testSharedExecutor() throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+
+        File jdbi = loader.getArtifactFile("org.jdbi", "jdbi3-core", "3.27.0");
+        File antlr = loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2");
+
+        Map<String, ClassPathResource> sequential = relocate(jdbi, antlr, 1, null);
+
+        ExecutorService workerPool = WorkerPool.create(4);
+        try {
+            assertSameContent(sequential, relocate(jdbi, antlr, TransformerOptions.DEFAULT.withExecutor(workerPool)));
+            // the transformer does not shut down a shared executor.
+            assertFalse(workerPool.isShutdown());
+        } finally {
+            workerPool.shutdownNow();
+            assertTrue(workerPool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testCachedRelocation(@TempDir Path cacheDirectory) throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+
+        File jdbi = loader.getArtifactFile("org.jdbi", "jdbi3-core", "3.27.0");
+        File antlr = loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2");
+
+        Map<String, ClassPathResource> uncached = relocate(jdbi, antlr, 1, null);
+
+        // populates the cache
+        assertSameContent(uncached, relocate(jdbi, antlr, 1, cacheDirectory));
+        long cacheEntries;
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            cacheEntries = files.filter(Files::isRegularFile).count();
+        }
+        assertTrue(cacheEntries > 0);
+
+        // reads from the cache
+        assertSameContent(uncached, relocate(jdbi, antlr, 1, cacheDirectory));
+        assertSameContent(uncached, relocate(jdbi, antlr, 4, cacheDirectory));
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            assertEquals(cacheEntries, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void testWorkersStopOnFailure() throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+
+        File jdbi = loader.getArtifactFile("org.jdbi", "jdbi3-core", "3.27.0");
+        File antlr = loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2");
+
+        try (Closer closer = Closer.create()) {
+            ClassPath classPath = new ClassPath(new File("/"), 0L, closer);
+            classPath.addFile(jdbi, "org.jdbi", "jdbi3-core", ClassPathTag.ROOT_JAR);
+            classPath.addFile(antlr, JDBI_PREFIX, "org.antlr", "antlr4-runtime", true);
+
+            JarTransformer jarTransformer = new JarTransformer(classPathResource -> {
+                throw new IllegalStateException("sink failed");
+            }, 0L, false, ImmutableSet.of(), TransformerOptions.DEFAULT.withThreads(4));
+
+            assertThrows(IllegalStateException.class, () -> jarTransformer.transform(classPath));
+            for (Thread thread : workerThreads()) {
+                thread.join(10_000L);
+            }
+            assertTrue(workerThreads().isEmpty());
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> jarTransformer.transform(classPath));
+            assertEquals("transformer has already been used", e.getMessage());
+        }
+    }
+
+    private static List<Thread> workerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("inline-worker-"))
+                .collect(Collectors.toList());
+    }
+
+    private static void assertSameContent(Map<String, ClassPathResource> expected, Map<String, ClassPathResource> actual) {
+        // same entries in the same order
+        assertEquals(ImmutableList.copyOf(expected.keySet()), ImmutableList.copyOf(actual.keySet()));
+
+        for (Map.Entry<String, ClassPathResource> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue().getContent(), actual.get(entry.getKey()).getContent(), entry.getKey());
+        }
+    }
+
+    private static Map<String, ClassPathResource> relocate(File jdbi, File antlr, int threads, Path cacheDirectory) throws Exception {
+        return relocate(jdbi, antlr, TransformerOptions.DEFAULT.withThreads(threads).withCacheDirectory(cacheDirectory));
+    }
+
+    private static Map<String, ClassPathResource> relocate(File jdbi, File antlr, TransformerOptions options) throws Exception {
+        try (Closer closer = Closer.create()) {
+            ClassPath classPath = new ClassPath(new File("/"), 0L, closer);
+            classPath.addFile(jdbi, "org.jdbi", "jdbi3-core", ClassPathTag.ROOT_JAR);
+            classPath.addFile(antlr, JDBI_PREFIX, "org.antlr", "antlr4-runtime", true);
+
+            CapturingConsumer consumer = new CapturingConsumer();
+            JarTransformer jarTransformer = new JarTransformer(consumer, 0L, false, ImmutableSet.of(), options);
+
+            jarTransformer.transform(classPath);
+
+            return consumer.getContent();
+        }
+    }
+
     public static class CapturingConsumer implements Consumer<ClassPathResource> {
 
         private final Map<String, ClassPathResource> names = new LinkedHashMap<>();
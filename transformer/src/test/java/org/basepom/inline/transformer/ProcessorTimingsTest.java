@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+public class ProcessorTimingsTest {
+
+    @Test
+    void testSelfTime() throws Exception {
+        OuterProcessor outerProcessor = new OuterProcessor();
+        SlowProcessor slowProcessor = new SlowProcessor();
+
+        ProcessorTimings timings = new ProcessorTimings();
+        JarProcessor.Holder holder = new JarProcessor.Holder(ImmutableSet.of(outerProcessor, slowProcessor), timings);
+
+        for (int i = 0; i < 3; i++) {
+            holder.process(ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE));
+        }
+        holder.scan(ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE));
+
+        ProcessorTimings.Counter outerCounter = timings.getCounter(outerProcessor, JarProcessor.Phase.PROCESS);
+        ProcessorTimings.Counter slowCounter = timings.getCounter(slowProcessor, JarProcessor.Phase.PROCESS);
+
+        assertEquals(3, outerCounter.getInvocations());
+        assertEquals(3, slowCounter.getInvocations());
+        // the processors only take part in the process phase.
+        assertEquals(0, timings.getCounter(slowProcessor, JarProcessor.Phase.SCAN).getInvocations());
+        assertEquals(0, timings.getCounter(outerProcessor, JarProcessor.Phase.SCAN).getInvocations());
+
+        // the time spent in the slow processor must not be attributed to the outer processor.
+        assertTrue(slowCounter.getNanos() >= TimeUnit.MILLISECONDS.toNanos(3 * SlowProcessor.DELAY_MILLIS));
+        assertTrue(outerCounter.getNanos() < slowCounter.getNanos());
+
+        List<String> summary = timings.getSummary();
+        assertTrue(summary.get(1).startsWith(SlowProcessor.class.getSimpleName()));
+        assertTrue(summary.get(summary.size() - 1).startsWith("Total"));
+    }
+
+    @Test
+    void testSameProcessorName() throws Exception {
+        OuterProcessor first = new OuterProcessor();
+        OuterProcessor second = new OuterProcessor();
+        Other.OuterProcessor other = new Other.OuterProcessor();
+
+        ProcessorTimings timings = new ProcessorTimings();
+        JarProcessor.Holder holder = new JarProcessor.Holder(ImmutableSet.of(first, second, other), timings);
+        holder.process(ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE));
+
+        // each processor instance is counted on its own.
+        assertNotSame(timings.getCounter(first, JarProcessor.Phase.PROCESS), timings.getCounter(second, JarProcessor.Phase.PROCESS));
+        assertEquals(1, timings.getCounter(first, JarProcessor.Phase.PROCESS).getInvocations());
+        assertEquals(1, timings.getCounter(second, JarProcessor.Phase.PROCESS).getInvocations());
+        assertEquals(1, timings.getCounter(other, JarProcessor.Phase.PROCESS).getInvocations());
+
+        List<String> summary = timings.getSummary();
+        assertTrue(summary.stream().anyMatch(line -> line.startsWith(OuterProcessor.class.getName() + " #1 ")));
+        assertTrue(summary.stream().anyMatch(line -> line.startsWith(OuterProcessor.class.getName() + " #2 ")));
+        assertTrue(summary.stream().anyMatch(line -> line.startsWith(Other.OuterProcessor.class.getName() + " ")));
+    }
+
+    @Test
+    void testNoTimings() throws Exception {
+        JarProcessor.Holder holder = new JarProcessor.Holder(ImmutableSet.of(new OuterProcessor()), null);
+        ClassPathResource resource = ClassPathResource.forTesting("Foo.class", null, ClassPathTag.CLASS, ClassPathTag.FILE);
+        assertEquals(resource, holder.process(resource).orElseThrow());
+    }
+
+    private static final class OuterProcessor implements JarProcessor {
+
+        @Override
+        public ClassPathResource process(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+            return chain.next(classPathResource);
+        }
+
+        @Override
+        public int getPriority() {
+            return 10;
+        }
+    }
+
+    private static final class Other {
+
+        private static final class OuterProcessor implements JarProcessor {
+
+            @Override
+            public ClassPathResource process(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+                return chain.next(classPathResource);
+            }
+
+            @Override
+            public int getPriority() {
+                return 30;
+            }
+        }
+    }
+
+    private static final class SlowProcessor implements JarProcessor {
+
+        private static final long DELAY_MILLIS = 10;
+
+        @Override
+        public ClassPathResource process(ClassPathResource classPathResource, Chain<ClassPathResource> chain) throws TransformerException, IOException {
+            try {
+                Thread.sleep(DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return chain.next(classPathResource);
+        }
+
+        @Override
+        public int getPriority() {
+            return 20;
+        }
+    }
+}
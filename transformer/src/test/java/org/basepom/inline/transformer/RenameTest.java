@@ -33,6 +33,10 @@ public class RenameTest {
         pathRename("net/sf/cglib", "foo", "net/sf/cglib/Bar", "foo/Bar");
         pathRename("net/sf/cglib", "foo", "net/sf/cglib/Bar/Baz", "foo/Bar/Baz");
         pathRename("net/sf/cglib", "foo", "net/sf/cglib/", "foo/");
+        pathRename("net/sf/cglib", "foo", "net/sf/cglib", "foo");
+        pathRename("net/sf/cglib", "foo", "net/sf/cglibx/Bar", null);
+        pathRename("net/sf/cglib", "foo", "net/sf/cgli", null);
+        pathRename("net/sf/cglib", "foo", "net/sf/cglib / Bar", "foo/Bar");
     }
 
     @Test
@@ -44,6 +48,12 @@ public class RenameTest {
         classRename("net.sf.cglib", "foo", "net.sf.cglib.proxy.Mixin$Generator", "foo.proxy.$Mixin$Generator", true);
         classRename("net.sf.cglib", "foo", "net.sf.cglib.Bar", "foo.$Bar", true);
         classRename("net.sf.cglib", "foo", "net.sf.cglib.Bar.Baz", "foo.Bar.$Baz", true);
+
+        classRename("net.sf.cglib", "foo", "net/sf/cglib/proxy/Mixin$Generator", "foo/proxy/$Mixin$Generator", true);
+        classRename("net.sf.cglib", "foo", "net.sf.cglib", null, true);
+        classRename("net.sf.cglib", "foo", "net.sf.cglibx.Bar", null, true);
+        classRename("net.sf.cglib", "foo", "net.sf", null, true);
+        classRename("net.sf.cglib", "foo", "net.sf.cglib. Bar", "foo.$Bar", true);
     }
 
     private static void pathRename(String pattern, String result, String value, String expect) {
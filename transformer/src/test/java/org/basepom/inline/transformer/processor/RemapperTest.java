@@ -16,30 +16,46 @@ package org.basepom.inline.transformer.processor;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.basepom.inline.transformer.ClassPathElement;
 import org.basepom.inline.transformer.ClassPathResource;
 import org.basepom.inline.transformer.ClassPathTag;
 import org.basepom.inline.transformer.asm.InlineRemapper;
+import org.basepom.inline.transformer.asm.InlineRemapper.StringRelocation;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import com.google.common.io.Closer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.commons.Remapper;
 
 public class RemapperTest {
 
+    protected RemapperProcessor processor;
+    protected ClassPathElement classPathElement;
     protected Remapper remapper;
 
     protected Closer closer = Closer.create();
 
     @BeforeEach
     public void setUp() throws Exception {
-        RemapperProcessor processor = new RemapperProcessor();
-        ClassPathElement classPathElement = ClassPathElement.forFile(new File("test.jar"), closer, "foo", "test", "test", false, 0L);
+        processor = new RemapperProcessor();
+        classPathElement = ClassPathElement.forFile(new File("test.jar"), closer, "foo", "test", "test", false, 0L);
         processor.addRule(classPathElement, "org");
 
         processor.addResource(ClassPathResource.forTesting("org/example/Object.class", classPathElement, ClassPathTag.CLASS, ClassPathTag.FILE));
@@ -80,6 +96,80 @@ public class RemapperTest {
         assertEquals("foo/org/example.package-info", remapper.mapValue("org/example.package-info"));
     }
 
+    @Test
+    public void testStringRelocation() {
+        Remapper off = new InlineRemapper(processor, StringRelocation.OFF);
+        Remapper exact = new InlineRemapper(processor, StringRelocation.EXACT);
+
+        assertEquals("org.example.Object", off.mapValue("org.example.Object"));
+        assertEquals("org/example/Object", off.mapValue("org/example/Object"));
+
+        assertEquals("foo.org.example.Object", exact.mapValue("org.example.Object"));
+        assertEquals("foo/org/example/Object", exact.mapValue("org/example/Object"));
+        assertEquals("foo/org/example.Object", exact.mapValue("org/example.Object"));
+        assertEquals("[Lfoo/org/example/Object;", exact.mapValue("[Lorg/example/Object;"));
+        assertEquals("org/example/Other", exact.mapValue("org/example/Other"));
+
+        // not a relocated package
+        assertEquals("java.lang.Object", remapper.mapValue("java.lang.Object"));
+        assertEquals("com/example/Object", exact.mapValue("com/example/Object"));
+    }
+
+    @Test
+    public void testMayRelocate() {
+        InlineRemapper inlineRemapper = new InlineRemapper(processor);
+
+        assertFalse(inlineRemapper.mayRelocate(new ClassReader(createClass("com/example/Foo", "java/lang/Object", "hello, world"))));
+        assertTrue(inlineRemapper.mayRelocate(new ClassReader(createClass("org/example/Object", "java/lang/Object", "hello, world"))));
+        assertTrue(inlineRemapper.mayRelocate(new ClassReader(createClass("com/example/Foo", "org/example/Object", "hello, world"))));
+        assertTrue(inlineRemapper.mayRelocate(new ClassReader(createClass("com/example/Foo", "java/lang/Object", "org.example.Object"))));
+    }
+
+    @Test
+    public void testFreeze() {
+        processor.freeze();
+
+        assertEquals("foo/org/example/Object", remapper.map("org/example/Object"));
+        assertEquals("foo/org/example/Object", remapper.map("org / example/Object"));
+        assertNull(remapper.map("org/example"));
+        assertNull(remapper.map("java/lang/Object"));
+
+        assertThrows(IllegalStateException.class,
+                () -> processor.addResource(ClassPathResource.forTesting("org/example/Other.class", classPathElement, ClassPathTag.CLASS, ClassPathTag.FILE)));
+    }
+
+    @Test
+    public void testConcurrentMapValue() throws Exception {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(i % 2 == 0 ? "org.example.Object" : "org/example/Value" + i);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Object>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executorService.submit(() -> values.stream().map(remapper::mapValue).collect(Collectors.toList())));
+            }
+            for (Future<List<Object>> future : futures) {
+                List<Object> result = future.get();
+                for (int i = 0; i < values.size(); i++) {
+                    assertEquals(i % 2 == 0 ? "foo.org.example.Object" : values.get(i), result.get(i));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static byte[] createClass(String name, String superName, String constant) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, name, null, superName, null);
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "VALUE", "Ljava/lang/String;", null, constant).visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
     private void assertUnchangedValue(String value) {
         assertEquals(value, remapper.mapValue(value));
     }
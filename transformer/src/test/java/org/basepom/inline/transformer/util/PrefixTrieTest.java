@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basepom.inline.transformer.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class PrefixTrieTest {
+
+    @Test
+    void testMatch() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("org/example/", 1L);
+        trie.add("org/", 2L);
+        trie.add("com/foo/", 4L);
+        trie.add("org/example/", 8L);
+
+        assertEquals(11L, trie.match("org/example/Foo"));
+        assertEquals(2L, trie.match("org/other/Foo"));
+        assertEquals(4L, trie.match("com/foo/Bar"));
+        assertEquals(0L, trie.match("com/fo"));
+        assertEquals(0L, trie.match("java/lang/Object"));
+        assertEquals(0L, trie.match(""));
+    }
+
+    @Test
+    void testEmptyPrefix() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("", 1L);
+        trie.add("META-INF/", 2L);
+
+        assertEquals(1L, trie.match(""));
+        assertEquals(1L, trie.match("org/example/Foo"));
+        assertEquals(3L, trie.match("META-INF/MANIFEST.MF"));
+    }
+
+    @Test
+    void testManyPrefixes() {
+        // the labels of each node stay sorted, independent of the order in which the prefixes are added.
+        PrefixTrie trie = new PrefixTrie();
+        for (int i = 99; i >= 0; i--) {
+            trie.add("p" + i + "/", 1L << (i % 64));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1L << (i % 64), trie.match("p" + i + "/Foo"), "p" + i);
+        }
+        assertEquals(0L, trie.match("p100/Foo"));
+        assertEquals(0L, trie.match("p1"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+public class SetMultiTrieTest {
+
+    @Test
+    void testFreeze() {
+        SetMultiTrie<String, String> trie = new SetMultiTrie<>();
+        trie.add(List.of("org", "example", "Foo"), "foo");
+        trie.add(List.of("org", "example", "Foo"), "foo2");
+        trie.add(List.of("org", "example", "Bar"), "bar");
+        trie.add(List.of("org", "example"), "example");
+        trie.add(List.of(), "root");
+
+        assertValues(trie);
+        trie.freeze();
+        assertValues(trie);
+
+        assertSame(trie.getValues(List.of("org", "example", "Foo")), trie.getValues(List.of("org", "example", "Foo")));
+        assertThrows(IllegalStateException.class, () -> trie.add(List.of("org"), "org"));
+    }
+
+    @Test
+    void testHashCollisions() {
+        // "Aa" and "BB" have the same hash code
+        SetMultiTrie<String, String> trie = new SetMultiTrie<>();
+        trie.add(List.of("Aa", "BB"), "Aa/BB");
+        trie.add(List.of("BB", "Aa"), "BB/Aa");
+        trie.add(List.of("BB", "BB"), "BB/BB");
+        trie.freeze();
+
+        assertEquals(ImmutableSet.of("Aa/BB"), trie.getValues(List.of("Aa", "BB")));
+        assertEquals(ImmutableSet.of("BB/Aa"), trie.getValues(List.of("BB", "Aa")));
+        assertEquals(ImmutableSet.of("BB/BB"), trie.getValues(List.of("BB", "BB")));
+        assertEquals(ImmutableSet.of(), trie.getValues(List.of("Aa", "Aa")));
+    }
+
+    @Test
+    void testForEach() {
+        SetMultiTrie<String, String> trie = new SetMultiTrie<>();
+        trie.add(List.of("org", "example", "Foo"), "foo");
+        trie.add(List.of("org", "example"), "example");
+        trie.freeze();
+
+        Map<List<String>, ImmutableSet<String>> entries = new HashMap<>();
+        trie.forEach(entries::put);
+        assertEquals(Map.of(List.of("org", "example", "Foo"), ImmutableSet.of("foo"), List.of("org", "example"), ImmutableSet.of("example")), entries);
+    }
+
+    private static void assertValues(SetMultiTrie<String, String> trie) {
+        assertEquals(List.of("foo", "foo2"), trie.getValues(List.of("org", "example", "Foo")).asList());
+        assertEquals(ImmutableSet.of("bar"), trie.getValues(List.of("org", "example", "Bar")));
+        assertEquals(ImmutableSet.of("example"), trie.getValues(List.of("org", "example")));
+        assertEquals(ImmutableSet.of("root"), trie.getValues(List.of()));
+        assertEquals(ImmutableSet.of(), trie.getValues(List.of("org")));
+        assertEquals(ImmutableSet.of(), trie.getValues(List.of("org", "example", "Baz")));
+        assertEquals(ImmutableSet.of(), trie.getValues(List.of("org", "example", "Foo", "Bar")));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SubstringMatcherTest {
+
+    @Test
+    void testContainsAny() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of("org/example", "org.example", "com/foo"));
+
+        assertTrue(matcher.containsAny("org/example/Foo"));
+        assertTrue(matcher.containsAny("(ILorg/example/Foo;)V"));
+        assertTrue(matcher.containsAny("Ljava/util/List<Lcom/foo/Bar;>;"));
+        assertTrue(matcher.containsAny("[Lorg.example.Foo;"));
+        assertTrue(matcher.containsAny("com/foo"));
+
+        assertFalse(matcher.containsAny(""));
+        assertFalse(matcher.containsAny("org/exampl"));
+        assertFalse(matcher.containsAny("java/lang/Object"));
+        assertFalse(matcher.containsAny("org/examplf/com/fo"));
+    }
+
+    @Test
+    void testOverlappingStrings() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of("abcd", "bce", "cf"));
+
+        assertTrue(matcher.containsAny("xabcex"));  // fails in "abcd", continues with "bce"
+        assertTrue(matcher.containsAny("abcf"));    // fails in "abcd", continues with "cf"
+        assertFalse(matcher.containsAny("abcabdbcbc"));
+
+        char[] value = "abcdx".toCharArray();
+        assertTrue(matcher.containsAny(value, 0, 4));
+        assertFalse(matcher.containsAny(value, 0, 3));
+        assertFalse(matcher.containsAny(value, 1, 5));
+    }
+
+    @Test
+    void testEmptyString() {
+        assertTrue(new SubstringMatcher(List.of("")).containsAny(""));
+        assertFalse(new SubstringMatcher(List.of()).containsAny("org/example"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.basepom.inline.transformer.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.basepom.inline.transformer.ClassNameUtils;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SymbolTableTest {
+
+    @Test
+    void testInternPath() {
+        SymbolTable symbolTable = new SymbolTable();
+
+        List<String> elements = symbolTable.internPath("org/example/Foo");
+        assertEquals(List.of("org", "example", "Foo"), elements);
+        assertEquals(3, symbolTable.size());
+
+        List<String> otherElements = symbolTable.internPath("org/example/Bar");
+        assertSame(elements.get(0), otherElements.get(0));
+        assertSame(elements.get(1), otherElements.get(1));
+        assertEquals(4, symbolTable.size());
+    }
+
+    @Test
+    void testFindPath() {
+        SymbolTable symbolTable = new SymbolTable();
+        List<String> elements = symbolTable.internPath("org/example/Foo");
+
+        List<String> foundElements = symbolTable.findPath("org/example/Foo");
+        assertEquals(elements, foundElements);
+        assertSame(elements.get(2), foundElements.get(2));
+
+        assertEquals(List.of("Foo", "org"), symbolTable.findPath("Foo/org"));
+        assertNull(symbolTable.findPath("org/example/Bar"));
+        assertNull(symbolTable.findPath("org/example/Foo/"));
+
+        assertEquals(List.of("org", "example"), symbolTable.findPathPrefix("org/example/Bar/Foo"));
+        assertEquals(List.of(), symbolTable.findPathPrefix("java/lang/String"));
+    }
+
+    @Test
+    void testSplitsLikePathToElements() {
+        SymbolTable symbolTable = new SymbolTable();
+
+        for (String path : List.of("", "/", "org//Foo", " org / example /Foo ", "org/example/")) {
+            assertEquals(ClassNameUtils.pathToElements(path), symbolTable.internPath(path));
+            assertEquals(ClassNameUtils.pathToElements(path), symbolTable.findPath(path));
+        }
+    }
+
+    @Test
+    void testResize() {
+        SymbolTable symbolTable = new SymbolTable();
+
+        for (int i = 0; i < 10_000; i++) {
+            symbolTable.internPath("org/example" + i + "/Foo" + i);
+        }
+        assertEquals(20_001, symbolTable.size());
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(List.of("org", "example" + i, "Foo" + i), symbolTable.findPath("org/example" + i + "/Foo" + i));
+        }
+    }
+}
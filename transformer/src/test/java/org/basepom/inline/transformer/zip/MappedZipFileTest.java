@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import de.softwareforge.testing.maven.MavenArtifactLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedZipFileTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void testArtifacts() throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+
+        assertSameContent(loader.getArtifactFile("org.jdbi", "jdbi3-core", "3.27.0"));
+        assertSameContent(loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2"));
+    }
+
+    @Test
+    public void testStoredAndDeflatedEntries() throws Exception {
+        byte[] content = "Hello, World! Hello, World! Hello, World!".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        File file = tempDir.resolve("test.zip").toFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath());
+                ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+
+            ZipEntry directory = new ZipEntry("dir/");
+            directory.setTime(946_684_800_000L);
+            zipOutputStream.putNextEntry(directory);
+            zipOutputStream.closeEntry();
+
+            ZipEntry stored = new ZipEntry("dir/stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            // outside the DOS time range, written as an extended timestamp
+            stored.setLastModifiedTime(FileTime.fromMillis(0L));
+            zipOutputStream.putNextEntry(stored);
+            zipOutputStream.write(content);
+            zipOutputStream.closeEntry();
+
+            ZipEntry deflated = new ZipEntry("dir/deflated-äöü.txt");
+            deflated.setTime(1_600_000_000_000L);
+            zipOutputStream.putNextEntry(deflated);
+            zipOutputStream.write(content);
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.putNextEntry(new ZipEntry("empty.txt"));
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.setComment("a comment");
+        }
+
+        assertSameContent(file);
+
+        for (long mappingThreshold : new long[] {0L, MappedZipFile.MAPPING_THRESHOLD}) {
+            try (MappedZipFile zipFile = MappedZipFile.open(file, mappingThreshold)) {
+                assertEquals(mappingThreshold == 0L, zipFile.isMapped());
+                assertEntries(zipFile, content, crc);
+            }
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        File file = tempDir.resolve("test.zip").toFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath());
+                ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+            zipOutputStream.putNextEntry(new ZipEntry("test.txt"));
+            zipOutputStream.write("Hello, World!".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+
+        MappedZipFile zipFile = MappedZipFile.open(file);
+        assertFalse(zipFile.isMapped());
+        MappedZipEntry entry = zipFile.entries().get(0);
+        assertArrayEquals("Hello, World!".getBytes(StandardCharsets.UTF_8), entry.getContent());
+
+        zipFile.close();
+        assertThrows(ZipException.class, entry::getContent);
+        assertThrows(IllegalStateException.class, zipFile::entries);
+    }
+
+    @Test
+    public void testOpenUnmapped() throws Exception {
+        byte[] content = new byte[(int) MappedZipFile.MAPPING_THRESHOLD + 1024];
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        File file = tempDir.resolve("large.zip").toFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath());
+                ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+            ZipEntry stored = new ZipEntry("large.bin");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            zipOutputStream.putNextEntry(stored);
+            zipOutputStream.write(content);
+            zipOutputStream.closeEntry();
+        }
+
+        try (MappedZipFile zipFile = MappedZipFile.open(file)) {
+            assertTrue(zipFile.isMapped());
+        }
+
+        try (MappedZipFile zipFile = MappedZipFile.openUnmapped(file)) {
+            assertFalse(zipFile.isMapped());
+            assertArrayEquals(content, zipFile.entries().get(0).getContent());
+        }
+    }
+
+    private static void assertEntries(MappedZipFile zipFile, byte[] content, CRC32 crc) throws IOException {
+        ImmutableList<MappedZipEntry> entries = zipFile.entries();
+        assertEquals(4, entries.size());
+
+        assertTrue(entries.get(0).isDirectory());
+
+        MappedZipEntry stored = entries.get(1);
+        assertEquals(MappedZipEntry.STORED, stored.getMethod());
+        assertEquals((int) crc.getValue(), stored.getCrc());
+        ByteBuffer buffer = stored.getContentBuffer();
+        assertTrue(buffer.isReadOnly());
+        byte[] bufferContent = new byte[buffer.remaining()];
+        buffer.get(bufferContent);
+        assertArrayEquals(content, bufferContent);
+
+        MappedZipEntry deflated = entries.get(2);
+        assertEquals(MappedZipEntry.DEFLATED, deflated.getMethod());
+        assertEquals(content.length, deflated.getSize());
+        assertEquals(deflated.getCompressedSize(), deflated.getRawData().remaining());
+        assertArrayEquals(content, deflated.getContent());
+    }
+
+    @Test
+    public void testNotAZipFile() throws Exception {
+        File file = tempDir.resolve("test.txt").toFile();
+        Files.write(file.toPath(), "this is not a zip file, but it is long enough to be one".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(ZipException.class, () -> MappedZipFile.open(file));
+    }
+
+    private static void assertSameContent(File file) throws IOException {
+        assertSameContent(file, 0L);
+        assertSameContent(file, MappedZipFile.MAPPING_THRESHOLD);
+    }
+
+    private static void assertSameContent(File file, long mappingThreshold) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file);
+                MappedZipFile mappedZipFile = MappedZipFile.open(file, mappingThreshold)) {
+
+            ImmutableList<MappedZipEntry> mappedEntries = mappedZipFile.entries();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+            for (MappedZipEntry mappedEntry : mappedEntries) {
+                assertTrue(entries.hasMoreElements());
+                ZipEntry entry = entries.nextElement();
+
+                assertEquals(entry.getName(), mappedEntry.getName());
+                assertEquals(entry.isDirectory(), mappedEntry.isDirectory());
+                assertEquals(entry.getTime(), mappedEntry.getTime(), entry.getName());
+                assertEquals(entry.getMethod(), mappedEntry.getMethod());
+                assertEquals(entry.getSize(), mappedEntry.getSize());
+                assertEquals(entry.getCompressedSize(), mappedEntry.getCompressedSize());
+
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(ByteStreams.toByteArray(in), mappedEntry.getContent(), entry.getName());
+                }
+            }
+            assertTrue(!entries.hasMoreElements());
+        }
+    }
+}
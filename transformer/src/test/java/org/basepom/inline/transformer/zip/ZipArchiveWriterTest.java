@@ -0,0 +1,392 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.basepom.inline.transformer.zip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.basepom.inline.transformer.util.WorkerPool;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import de.softwareforge.testing.maven.MavenArtifactLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ZipArchiveWriterTest {
+
+    private static final long TIMESTAMP = 1_600_000_000_000L;
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void testWriteEntries() throws Exception {
+        byte[] content = "Hello, World! Hello, World! Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        File file = tempDir.resolve("test.jar").toFile();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            writer.writeEntry("META-INF/", TIMESTAMP, new byte[0]);
+            writer.writeEntry("META-INF/hello-äöü.txt", TIMESTAMP, content);
+            writer.writeEntry("old.txt", 0L, content);
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(3, zipFile.size());
+
+            ZipEntry directory = zipFile.getEntry("META-INF/");
+            assertNotNull(directory);
+            assertEquals(ZipEntry.STORED, directory.getMethod());
+            assertEquals(TIMESTAMP, directory.getTime());
+            // jar magic
+            assertArrayEquals(new byte[] {(byte) 0xfe, (byte) 0xca, 0, 0}, directory.getExtra());
+
+            ZipEntry hello = zipFile.getEntry("META-INF/hello-äöü.txt");
+            assertNotNull(hello);
+            assertEquals(ZipEntry.DEFLATED, hello.getMethod());
+            assertNull(hello.getExtra());
+            try (InputStream in = zipFile.getInputStream(hello)) {
+                assertArrayEquals(content, ByteStreams.toByteArray(in));
+            }
+
+            // outside the DOS time range
+            assertEquals(0L, zipFile.getEntry("old.txt").getTime());
+        }
+
+        // the local headers must be readable as well
+        try (JarInputStream in = new JarInputStream(Files.newInputStream(file.toPath()))) {
+            int count = 0;
+            for (JarEntry entry = in.getNextJarEntry(); entry != null; entry = in.getNextJarEntry()) {
+                if (!entry.isDirectory()) {
+                    assertArrayEquals(content, ByteStreams.toByteArray(in), entry.getName());
+                }
+                count++;
+            }
+            // JarInputStream skips the leading META-INF directory
+            assertEquals(2, count);
+        }
+    }
+
+    @Test
+    public void testEntryLayout() throws Exception {
+        byte[] content = "Hello, World! Hello, World! Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        File file = tempDir.resolve("test.jar").toFile();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            writer.writeEntry("dir/", TIMESTAMP, new byte[0]);
+            writer.writeEntry("dir/hello.txt", TIMESTAMP, content);
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+
+        // directory entries are stored without a data descriptor, JarOutputStream deflates them and writes a data descriptor.
+        assertEquals(MappedZipFile.LOCAL_HEADER_SIGNATURE, data.getInt(0));
+        assertEquals(10, data.getShort(4)); // version needed
+        assertEquals(0x0800, data.getShort(6)); // UTF-8 names, no data descriptor
+        assertEquals(MappedZipEntry.STORED, data.getShort(8));
+        assertEquals(0, data.getInt(14)); // crc
+        assertEquals(0, data.getInt(18)); // compressed size
+        assertEquals(0, data.getInt(22)); // size
+        assertEquals(4, data.getShort(26)); // name length
+        assertEquals(4, data.getShort(28)); // jar magic
+        assertEquals((short) 0xcafe, data.getShort(34));
+        assertEquals(0, data.getShort(36));
+
+        // file entries are deflated, sizes and crc are in the local header.
+        int fileHeader = 38;
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(MappedZipFile.LOCAL_HEADER_SIGNATURE, data.getInt(fileHeader));
+        assertEquals(20, data.getShort(fileHeader + 4));
+        assertEquals(0x0800, data.getShort(fileHeader + 6));
+        assertEquals(MappedZipEntry.DEFLATED, data.getShort(fileHeader + 8));
+        assertEquals((int) crc.getValue(), data.getInt(fileHeader + 14));
+        assertEquals(content.length, data.getInt(fileHeader + 22));
+    }
+
+    @Test
+    public void testEntryTooLarge() throws Exception {
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(ByteStreams.nullOutputStream())) {
+            ZipException e = assertThrows(ZipException.class,
+                    () -> writer.writeCompressedEntry("large.bin", TIMESTAMP, MappedZipEntry.STORED, 0, Integer.MIN_VALUE, ByteBuffer.allocate(0)));
+            assertEquals("entry 'large.bin' is too large, entries of 2GB or more are not supported", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRawCopy() throws Exception {
+        MavenArtifactLoader loader = new MavenArtifactLoader("jar");
+        File antlr = loader.getArtifactFile("org.antlr", "antlr4-runtime", "4.9.2");
+
+        File file = tempDir.resolve("test.jar").toFile();
+        try (MappedZipFile source = MappedZipFile.open(antlr);
+                ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            for (MappedZipEntry entry : source.entries()) {
+                writer.writeRawEntry("relocated/" + entry.getName(), entry.getTime(), entry);
+            }
+        }
+
+        try (ZipFile sourceFile = new ZipFile(antlr);
+                ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(sourceFile.size(), zipFile.size());
+
+            for (ZipEntry sourceEntry : sourceFile.stream().toArray(ZipEntry[]::new)) {
+                ZipEntry entry = zipFile.getEntry("relocated/" + sourceEntry.getName());
+                assertNotNull(entry, sourceEntry.getName());
+                assertEquals(sourceEntry.getTime(), entry.getTime());
+                assertEquals(sourceEntry.getCrc(), entry.getCrc());
+
+                try (InputStream sourceIn = sourceFile.getInputStream(sourceEntry);
+                        InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(ByteStreams.toByteArray(sourceIn), ByteStreams.toByteArray(in), entry.getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSpooledEntries() throws Exception {
+        byte[][] contents = new byte[50][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = Strings.repeat("entry " + i + "\n", i * 100).getBytes(StandardCharsets.UTF_8);
+        }
+
+        File file = tempDir.resolve("test.jar").toFile();
+        try (ZipEntrySpool spool = new ZipEntrySpool(tempDir.resolve("spool"))) {
+            SpooledZipEntry[] entries = new SpooledZipEntry[contents.length];
+            for (int i = 0; i < contents.length; i++) {
+                entries[i] = spool.add("entry-" + i, contents[i]);
+            }
+
+            // written in reverse order
+            try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+                for (int i = contents.length - 1; i >= 0; i--) {
+                    writer.writeSpooledEntry("entry-" + i, TIMESTAMP, spool, entries[i]);
+                }
+            }
+        }
+
+        try (MappedZipFile zipFile = MappedZipFile.open(file)) {
+            assertEquals(contents.length, zipFile.entries().size());
+            for (MappedZipEntry entry : zipFile.entries()) {
+                int index = Integer.parseInt(entry.getName().substring("entry-".length()));
+                assertArrayEquals(contents[index], entry.getContent(), entry.getName());
+            }
+        }
+
+        // spool file is removed
+        try (Stream<Path> files = Files.list(tempDir.resolve("spool"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testParallelSpool() throws Exception {
+        byte[][] contents = new byte[500][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = Strings.repeat("entry " + i + "\n", i * 10).getBytes(StandardCharsets.UTF_8);
+        }
+
+        File sequential = writeSpooled(contents, 1, CompressionPolicy.DEFAULT);
+        File parallel = writeSpooled(contents, 4, CompressionPolicy.DEFAULT);
+
+        // entries are compressed independently, the result does not depend on the number of threads.
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+    }
+
+    @Test
+    public void testSharedExecutor() throws Exception {
+        String[] names = new String[100];
+        byte[][] contents = new byte[names.length][];
+        for (int i = 0; i < contents.length; i++) {
+            names[i] = "entry-" + i;
+            contents[i] = Strings.repeat("entry " + i + "\n", i * 10).getBytes(StandardCharsets.UTF_8);
+        }
+
+        File sequential = writeSpooled(names, contents, 1, CompressionPolicy.DEFAULT);
+
+        ExecutorService workerPool = WorkerPool.create(4);
+        try {
+            File shared;
+            try (ZipEntrySpool spool = new ZipEntrySpool(tempDir.resolve("spool"), CompressionPolicy.DEFAULT, workerPool)) {
+                shared = writeSpooled(names, contents, spool);
+            }
+            assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(shared.toPath()));
+            // the spool does not shut down a shared executor.
+            assertFalse(workerPool.isShutdown());
+        } finally {
+            workerPool.shutdownNow();
+            assertTrue(workerPool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testParallelSpoolFailure() throws Exception {
+        try (ZipEntrySpool spool = new ZipEntrySpool(tempDir.resolve("spool"), 4, CompressionPolicy.DEFAULT)) {
+            Future<SpooledZipEntry> entry = spool.submit("broken", () -> {
+                throw new ZipException("broken");
+            });
+            ZipException e = assertThrows(ZipException.class, () -> ZipEntrySpool.getEntry(entry));
+            assertEquals("broken", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCompressionPolicy() throws Exception {
+        byte[] text = Strings.repeat("Hello, World!\n", 100).getBytes(StandardCharsets.UTF_8);
+        byte[] random = new byte[1000];
+        new Random(1234).nextBytes(random);
+
+        byte[][] contents = {text, random, text};
+        String[] names = {"hello.txt", "random.bin", "hello.png"};
+
+        assertMethods(writeSpooled(names, contents, 1, CompressionPolicy.DEFAULT),
+                MappedZipEntry.DEFLATED, MappedZipEntry.DEFLATED, MappedZipEntry.DEFLATED);
+        assertMethods(writeSpooled(names, contents, 1, new CompressionPolicy(CompressionPolicy.Mode.STORED, -1)),
+                MappedZipEntry.STORED, MappedZipEntry.STORED, MappedZipEntry.STORED);
+        // random data does not compress, png files are already compressed
+        assertMethods(writeSpooled(names, contents, 1, new CompressionPolicy(CompressionPolicy.Mode.AUTO, 9)),
+                MappedZipEntry.DEFLATED, MappedZipEntry.STORED, MappedZipEntry.STORED);
+
+        assertThrows(IllegalArgumentException.class, () -> new CompressionPolicy(CompressionPolicy.Mode.DEFLATED, 10));
+    }
+
+    @Test
+    public void testRawCopyPolicy() throws Exception {
+        byte[] text = Strings.repeat("Hello, World!\n", 100).getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(text);
+
+        File file = tempDir.resolve("test.jar").toFile();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            writer.writeCompressedEntry("stored.txt", TIMESTAMP, MappedZipEntry.STORED, (int) crc.getValue(), text.length, ByteBuffer.wrap(text));
+            writer.writeEntry("deflated.txt", TIMESTAMP, text);
+        }
+
+        try (MappedZipFile zipFile = MappedZipFile.open(file)) {
+            MappedZipEntry stored = zipFile.entries().get(0);
+            MappedZipEntry deflated = zipFile.entries().get(1);
+
+            assertFalse(CompressionPolicy.DEFAULT.isRawCopyAllowed(stored));
+            assertTrue(CompressionPolicy.DEFAULT.isRawCopyAllowed(deflated));
+
+            CompressionPolicy storedPolicy = new CompressionPolicy(CompressionPolicy.Mode.STORED, -1);
+            assertTrue(storedPolicy.isRawCopyAllowed(stored));
+            assertFalse(storedPolicy.isRawCopyAllowed(deflated));
+
+            CompressionPolicy autoPolicy = new CompressionPolicy(CompressionPolicy.Mode.AUTO, -1);
+            assertTrue(autoPolicy.isRawCopyAllowed(stored));
+            assertTrue(autoPolicy.isRawCopyAllowed(deflated));
+
+            // the level of the input entries is unknown, so all entries are recompressed.
+            CompressionPolicy levelPolicy = new CompressionPolicy(CompressionPolicy.Mode.DEFLATED, 9);
+            assertFalse(levelPolicy.isRawCopyAllowed(stored));
+            assertFalse(levelPolicy.isRawCopyAllowed(deflated));
+        }
+    }
+
+    private static void assertMethods(File file, int... methods) throws Exception {
+        try (MappedZipFile zipFile = MappedZipFile.open(file)) {
+            assertEquals(methods.length, zipFile.entries().size());
+            for (int i = 0; i < methods.length; i++) {
+                MappedZipEntry entry = zipFile.entries().get(i);
+                assertEquals(methods[i], entry.getMethod(), entry.getName());
+            }
+        }
+    }
+
+    private File writeSpooled(byte[][] contents, int threads, CompressionPolicy compressionPolicy) throws Exception {
+        String[] names = new String[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            names[i] = "entry-" + i;
+        }
+        return writeSpooled(names, contents, threads, compressionPolicy);
+    }
+
+    private File writeSpooled(String[] names, byte[][] contents, int threads, CompressionPolicy compressionPolicy) throws Exception {
+        try (ZipEntrySpool spool = new ZipEntrySpool(tempDir.resolve("spool"), threads, compressionPolicy)) {
+            return writeSpooled(names, contents, spool);
+        }
+    }
+
+    private File writeSpooled(String[] names, byte[][] contents, ZipEntrySpool spool) throws Exception {
+        File file = Files.createTempFile(tempDir, "test-", ".jar").toFile();
+        List<Future<SpooledZipEntry>> entries = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            byte[] content = contents[i];
+            entries.add(spool.submit(names[i], () -> content));
+        }
+
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            for (int i = 0; i < contents.length; i++) {
+                writer.writeSpooledEntry(names[i], TIMESTAMP, spool, ZipEntrySpool.getEntry(entries.get(i)));
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+        File file = tempDir.resolve("test.jar").toFile();
+        int count = 70_000;
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            for (int i = 0; i < count; i++) {
+                writer.writeEntry("entry-" + i, TIMESTAMP, new byte[0]);
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(file);
+                MappedZipFile mappedZipFile = MappedZipFile.open(file)) {
+            assertEquals(count, zipFile.size());
+            assertEquals(count, mappedZipFile.entries().size());
+            assertTrue(mappedZipFile.entries().get(count - 1).getName().endsWith(Integer.toString(count - 1)));
+        }
+    }
+
+    @Test
+    public void testDuplicateEntry() throws Exception {
+        File file = tempDir.resolve("test.jar").toFile();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(file.toPath()))) {
+            writer.writeEntry("hello.txt", TIMESTAMP, new byte[0]);
+            assertThrows(ZipException.class, () -> writer.writeEntry("hello.txt", TIMESTAMP, new byte[0]));
+        }
+    }
+}